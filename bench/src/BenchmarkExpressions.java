@@ -0,0 +1,17 @@
+package calculator;
+
+// Expressions the benchmarks are parameterized by, from a single operation to a deep mix of every function.
+// The texts are fixed so results stay comparable between runs and commits.
+final class BenchmarkExpressions {
+    private BenchmarkExpressions() {
+    }
+
+    static String text(String complexity) {
+        return switch (complexity) {
+            case "simple" -> "X^2";
+            case "moderate" -> "sin(X)×X+cos(2X)÷3";
+            case "complex" -> "√(X^2+1)×ln(X^2+2)+sin(cos(tan(X÷3)))-e^sin(X)÷(1+X^4)+log(X^2+1)";
+            default -> throw new IllegalArgumentException("Unknown complexity: " + complexity);
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package calculator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Single-point evaluation, one x at a time across [-10, 10], by each evaluator the calculator has, against
+// one batch call over the same points
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EvaluateBenchmark {
+    @Param({"simple", "moderate", "complex"})
+    public String complexity;
+
+    @Param({"1", "1000", "100000"})
+    public int samples;
+
+    private Token tree;
+    private Token optimized;
+    private TieredFunction compiled;
+    private double[] xs;
+    private double[] ys;
+
+    @Setup
+    public void setUp() {
+        tree = ExpressionReader.parse(BenchmarkExpressions.text(complexity));
+        optimized = ExpressionOptimizer.optimize(tree, true);
+        compiled = new TieredFunction(optimized, true);
+        compiled.expectInvocations(Long.MAX_VALUE); // Compiled up front, the tiering is not measured
+        xs = new double[samples];
+        ys = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            xs[i] = samples == 1 ? 0.5 : -10 + 20.0 * i / (samples - 1);
+        }
+    }
+
+    @Benchmark
+    public double parseTree() {
+        double sum = 0;
+        for (double x : xs) {
+            sum += Parser.evaluate(tree, true, x);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double optimizedTree() {
+        double sum = 0;
+        for (double x : xs) {
+            sum += Parser.evaluate(optimized, true, x);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double bytecode() {
+        double sum = 0;
+        for (double x : xs) {
+            sum += compiled.applyAsDouble(x);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) {
+        Parser.evaluate(optimized, true, xs, ys);
+        blackhole.consume(ys);
+    }
+}
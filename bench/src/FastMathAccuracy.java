@@ -0,0 +1,122 @@
+package calculator;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+// Checks every FastMath kernel against StrictMath over random arguments and fails if one exceeds its documented
+// error bound; FastMathBenchmark measures their speed. Run with
+//     java -cp bench/target/benchmarks.jar calculator.FastMathAccuracy [samples per range]
+public class FastMathAccuracy {
+    private static final long SEED = 20261017;
+
+    private static boolean failed;
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        // Angles near zero, over the plotted range, and out to where the reduction hands over to Math
+        for (double range : new double[] {1, 100, 1e6}) {
+            checkScaled("sin", FastMath::sin, StrictMath::sin, uniform(random, samples, -range, range), FastMath.SIN_COS_MAX_ERROR);
+            checkScaled("cos", FastMath::cos, StrictMath::cos, uniform(random, samples, -range, range), FastMath.SIN_COS_MAX_ERROR);
+            checkRelative("tan", FastMath::tan, StrictMath::tan, uniform(random, samples, -range, range), FastMath.TAN_MAX_RELATIVE_ERROR);
+        }
+
+        // Logarithms over every exponent, and close to 1 where the value is smallest
+        double[] positive = logUniform(random, samples, -1020, 1020);
+        checkScaled("ln", FastMath::log, StrictMath::log, positive, FastMath.LOG_MAX_ERROR);
+        checkScaled("log", FastMath::log10, StrictMath::log10, positive, FastMath.LOG_MAX_ERROR);
+        checkScaled("ln near 1", FastMath::log, StrictMath::log, uniform(random, samples, 0.5, 2), FastMath.LOG_MAX_ERROR);
+        checkRelative("exp", FastMath::exp, StrictMath::exp, uniform(random, samples, -700, 700), FastMath.EXP_MAX_RELATIVE_ERROR);
+
+        // Integer exponents go through multiplication chains, the rest through exp and log
+        double[] bases = uniform(random, samples, -10, 10);
+        double[] integers = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            integers[i] = random.nextInt(-FastMath.MAX_CHAIN_EXPONENT, FastMath.MAX_CHAIN_EXPONENT + 1);
+        }
+        checkRelative("pow, integer exponent", FastMath::pow, StrictMath::pow, bases, integers, FastMath.POW_MAX_RELATIVE_ERROR);
+        double[] exponents = uniform(random, samples, -30, 30);
+        checkRelative("pow", FastMath::pow, StrictMath::pow, logUniform(random, samples, -30, 30), exponents, FastMath.POW_MAX_RELATIVE_ERROR);
+        checkRelative("pow, extreme bases", FastMath::pow, StrictMath::pow, logUniform(random, samples, -1020, 1020),
+            uniform(random, samples, -1, 1), FastMath.POW_MAX_RELATIVE_ERROR);
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static double[] uniform(SplittableRandom random, int count, double from, double to) {
+        double[] xs = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = random.nextDouble(from, to);
+        }
+        return xs;
+    }
+
+    // Positive values with a uniformly distributed binary exponent
+    private static double[] logUniform(SplittableRandom random, int count, int minExponent, int maxExponent) {
+        double[] xs = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = Math.scalb(random.nextDouble(1, 2), random.nextInt(minExponent, maxExponent));
+        }
+        return xs;
+    }
+
+    // Absolute error where the value is below 1 in magnitude, relative above
+    private static void checkScaled(String name, DoubleUnaryOperator fast, DoubleUnaryOperator strict, double[] xs, double bound) {
+        double worst = 0;
+        double worstX = Double.NaN;
+        for (double x : xs) {
+            double expected = strict.applyAsDouble(x);
+            double error = Math.abs(fast.applyAsDouble(x) - expected) / Math.max(1, Math.abs(expected));
+            if (!(error <= worst)) {
+                worst = error;
+                worstX = x;
+            }
+        }
+        report(name, worst, worstX, bound, "scaled");
+    }
+
+    private static void checkRelative(String name, DoubleUnaryOperator fast, DoubleUnaryOperator strict, double[] xs, double bound) {
+        double worst = 0;
+        double worstX = Double.NaN;
+        for (double x : xs) {
+            double expected = strict.applyAsDouble(x);
+            double error = relativeError(fast.applyAsDouble(x), expected);
+            if (!(error <= worst)) {
+                worst = error;
+                worstX = x;
+            }
+        }
+        report(name, worst, worstX, bound, "relative");
+    }
+
+    private static void checkRelative(String name, DoubleBinaryOperator fast, DoubleBinaryOperator strict, double[] xs, double[] ys, double bound) {
+        double worst = 0;
+        double worstX = Double.NaN;
+        for (int i = 0; i < xs.length; i++) {
+            double error = relativeError(fast.applyAsDouble(xs[i], ys[i]), strict.applyAsDouble(xs[i], ys[i]));
+            if (!(error <= worst)) {
+                worst = error;
+                worstX = xs[i];
+            }
+        }
+        report(name, worst, worstX, bound, "relative");
+    }
+
+    // Infinities and NaN must match exactly
+    private static double relativeError(double actual, double expected) {
+        if (!Double.isFinite(expected) || expected == 0) {
+            return Double.compare(actual, expected) == 0 || actual == expected ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(actual - expected) / Math.abs(expected);
+    }
+
+    private static void report(String name, double worst, double worstX, double bound, String kind) {
+        boolean ok = worst <= bound;
+        failed |= !ok;
+        System.out.printf("%-22s max %s error %.3e at %.17g (bound %.0e) %s%n", name, kind, worst, worstX, bound, ok ? "ok" : "FAILED");
+    }
+}
@@ -0,0 +1,80 @@
+package calculator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleBinaryOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One FastMath kernel over 1000 random arguments in the range plots usually cover, against Math and StrictMath
+// over the same arguments. pow takes non-integer exponents, powInteger the ones that become multiplication chains.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FastMathBenchmark {
+    private static final int SAMPLES = 1000;
+
+    @Param({"sin", "cos", "tan", "ln", "log", "pow", "powInteger"})
+    public String kernel;
+
+    private double[] xs;
+    private double[] ys;
+    private DoubleBinaryOperator fast;
+    private DoubleBinaryOperator math;
+    private DoubleBinaryOperator strict;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        xs = new double[SAMPLES];
+        ys = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = kernel.equals("ln") || kernel.equals("log") || kernel.equals("pow") ? random.nextDouble(0, 100) : random.nextDouble(-10, 10);
+            ys[i] = kernel.equals("powInteger") ? random.nextInt(2, 6) : random.nextDouble(-3, 3);
+        }
+        switch (kernel) {
+            case "sin" -> { fast = (x, y) -> FastMath.sin(x); math = (x, y) -> Math.sin(x); strict = (x, y) -> StrictMath.sin(x); }
+            case "cos" -> { fast = (x, y) -> FastMath.cos(x); math = (x, y) -> Math.cos(x); strict = (x, y) -> StrictMath.cos(x); }
+            case "tan" -> { fast = (x, y) -> FastMath.tan(x); math = (x, y) -> Math.tan(x); strict = (x, y) -> StrictMath.tan(x); }
+            case "ln" -> { fast = (x, y) -> FastMath.log(x); math = (x, y) -> Math.log(x); strict = (x, y) -> StrictMath.log(x); }
+            case "log" -> { fast = (x, y) -> FastMath.log10(x); math = (x, y) -> Math.log10(x); strict = (x, y) -> StrictMath.log10(x); }
+            case "pow", "powInteger" -> { fast = FastMath::pow; math = Math::pow; strict = StrictMath::pow; }
+            default -> throw new IllegalArgumentException("Unknown kernel: " + kernel);
+        }
+    }
+
+    @Benchmark
+    public double fastMath() {
+        return sum(fast);
+    }
+
+    @Benchmark
+    public double math() {
+        return sum(math);
+    }
+
+    @Benchmark
+    public double strictMath() {
+        return sum(strict);
+    }
+
+    private double sum(DoubleBinaryOperator function) {
+        double sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            sum += function.applyAsDouble(xs[i], ys[i]);
+        }
+        return sum;
+    }
+}
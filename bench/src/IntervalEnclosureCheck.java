@@ -0,0 +1,57 @@
+package calculator;
+
+import java.util.SplittableRandom;
+
+// Checks that IntervalEvaluator encloses every defined value Parser.evaluate produces over random x intervals,
+// and fails if a sample falls outside its enclosure. Run with
+//     java -cp bench/target/benchmarks.jar calculator.IntervalEnclosureCheck [intervals per expression]
+public class IntervalEnclosureCheck {
+    private static final long SEED = 20261017;
+    private static final int SAMPLES_PER_INTERVAL = 64;
+
+    // Poles, domain edges, and an exponent of 0 on an undefined base, which Parser evaluates to 1
+    private static final String[] EXPRESSIONS = {
+        "X^2", "1÷X", "tan(X)", "√(X)", "ln(X)", "X^0.5", "(-2)^X",
+        "√(X-20)^0", "ln(X-20)^0", "(1÷(X-X))^0",
+        BenchmarkExpressions.text("moderate"), BenchmarkExpressions.text("complex"),
+    };
+
+    private static boolean failed;
+
+    public static void main(String[] args) {
+        int intervals = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        for (String text : EXPRESSIONS) {
+            Token tree = ExpressionReader.parse(text);
+            check(text, tree, random, intervals, -10, 10);
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(String text, Token tree, SplittableRandom random, int intervals, double from, double to) {
+        int escapes = 0;
+        double worstX = Double.NaN;
+        for (int i = 0; i < intervals; i++) {
+            double a = random.nextDouble(from, to);
+            double b = random.nextDouble(from, to);
+            double lo = Math.min(a, b);
+            double hi = Math.max(a, b);
+            Interval enclosure = IntervalEvaluator.evaluate(tree, true, lo, hi);
+            for (int j = 0; j <= SAMPLES_PER_INTERVAL; j++) {
+                double x = j == SAMPLES_PER_INTERVAL ? hi : lo + (hi - lo) * j / SAMPLES_PER_INTERVAL;
+                double value = Parser.evaluate(tree, true, x);
+                if (Double.isFinite(value) && enclosure.isOutside(value, value)) {
+                    escapes++;
+                    worstX = x;
+                }
+            }
+        }
+        boolean ok = escapes == 0;
+        failed |= !ok;
+        System.out.printf("%-22s %d samples outside their enclosure, last at %.17g %s%n", text, escapes, worstX, ok ? "ok" : "FAILED");
+    }
+}
@@ -0,0 +1,56 @@
+package calculator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Text to parse tree, as done for every typed, pasted or loaded expression. samples is the number of
+// expressions parsed per operation, each a distinct string so nothing is shared between them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParseBenchmark {
+    @Param({"simple", "moderate", "complex"})
+    public String complexity;
+
+    @Param({"1", "1000"})
+    public int samples;
+
+    private String[] texts;
+
+    @Setup
+    public void setUp() {
+        texts = new String[samples];
+        for (int i = 0; i < samples; i++) {
+            texts[i] = BenchmarkExpressions.text(complexity) + "+" + i;
+        }
+    }
+
+    @Benchmark
+    public void expressionReader(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(ExpressionReader.parse(text));
+        }
+    }
+
+    // Parsing followed by the optimizer, as plotting does on a cache miss
+    @Benchmark
+    public void parseAndOptimize(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(ExpressionOptimizer.optimize(ExpressionReader.parse(text), true));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package calculator;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Drawing sampled curves into an offscreen image with the same stroke and hints as the graph panel, and
+// rendering the same expression in X and Y as an implicit curve and a heatmap. samples is the image width
+// in pixels; curve samples are taken once per pixel, so it is the number of points drawn too.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"simple", "moderate", "complex"})
+    public String complexity;
+
+    @Param({"400", "1600"})
+    public int samples;
+
+    private ForkJoinPool pool;
+    private Viewport viewport;
+    private BufferedImage image;
+    private SampleBuffer curve;
+    private final PolylineRasterizer rasterizer = new PolylineRasterizer();
+    private FieldRenderer fieldRenderer;
+    private Token field;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        viewport = new Viewport(-10, 10, -10, 10, samples, samples);
+        image = new BufferedImage(samples, samples, BufferedImage.TYPE_INT_ARGB);
+
+        String text = BenchmarkExpressions.text(complexity);
+        Token optimized = ExpressionOptimizer.optimize(ExpressionReader.parse(text), true);
+        curve = new SampleTileCache(pool).samples(new FunctionFamily(List.of(optimized), true), viewport, 1)[0];
+        fieldRenderer = new FieldRenderer(pool);
+        field = ExpressionOptimizer.optimize(ExpressionReader.parse("Y-(" + text + ")"), true); // Implicitly y = f(x)
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage curve() {
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setBackground(new Color(0, true));
+            g2d.clearRect(0, 0, samples, samples);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g2d.setStroke(new BasicStroke(2));
+            g2d.setColor(Color.RED);
+            rasterizer.draw(g2d, curve, viewport, true);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage implicitCurve() {
+        return fieldRenderer.render(field, FieldRenderer.Mode.IMPLICIT, 0xFF0000, viewport);
+    }
+
+    @Benchmark
+    public BufferedImage heatmap() {
+        return fieldRenderer.render(field, FieldRenderer.Mode.HEATMAP, 0, viewport);
+    }
+}
@@ -0,0 +1,76 @@
+package calculator;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sampling a whole panel the way drawFunction does: the adaptive pass of the sampling engine, and the uniform
+// pass of the tile cache starting from an empty cache. samples is the panel width in pixels, fastMath the plot
+// precision setting.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SamplingBenchmark {
+    @Param({"simple", "moderate", "complex"})
+    public String complexity;
+
+    @Param({"400", "1600", "6400"})
+    public int samples;
+
+    @Param({"false", "true"})
+    public boolean fastMath;
+
+    private ForkJoinPool pool;
+    private SamplingEngine engine;
+    private SampleTileCache tileCache;
+    private FunctionFamily family;
+    private Viewport viewport;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        engine = new SamplingEngine(pool);
+        tileCache = new SampleTileCache(pool);
+        Token optimized = ExpressionOptimizer.optimize(ExpressionReader.parse(BenchmarkExpressions.text(complexity)), true);
+        family = new FunctionFamily(List.of(optimized), true, fastMath);
+        viewport = new Viewport(-10, 10, -10, 10, samples, samples * 3 / 4);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCache() {
+        tileCache.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SampleBuffer[] adaptive() throws InterruptedException {
+        SamplingEngine.Job job = engine.submit(family, viewport, done -> {});
+        job.await(0); // Until done
+        return job.getSamples();
+    }
+
+    @Benchmark
+    public SampleBuffer[] uniform() {
+        return tileCache.samples(family, viewport, 1);
+    }
+}
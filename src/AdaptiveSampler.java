@@ -0,0 +1,88 @@
+package calculator;
+
+import java.util.function.DoubleUnaryOperator;
+
+public class AdaptiveSampler {
+    public static final int DEFAULT_MAX_DEPTH = 12;
+
+    private final int maxDepth;
+    private final double pixelWidth;
+    private final double pixelHeight;
+    private final double minIntervalWidth;
+    private final double tolerance;
+    private int remainingBudget;
+
+    // pixelWidth and pixelHeight are the size of one pixel in graph units; sampleBudget caps the extra evaluations
+    public AdaptiveSampler(int maxDepth, int sampleBudget, double pixelWidth, double pixelHeight) {
+        this.maxDepth = maxDepth;
+        this.remainingBudget = sampleBudget;
+        this.pixelWidth = pixelWidth;
+        this.pixelHeight = pixelHeight;
+        this.minIntervalWidth = pixelWidth / 8;  // Sub-pixel resolution for bends and discontinuities
+        this.tolerance = pixelHeight / 2;        // Half a pixel of deviation from a straight segment is visible
+    }
+
+    public int getRemainingBudget() {
+        return remainingBudget;
+    }
+
+    // Refines the interval (x0, y0)-(x1, y1), appending every point after x0 up to and including x1.
+    // Detected discontinuities are appended as a point with a NaN y so the curve is broken there.
+    public void refine(DoubleUnaryOperator function, double x0, double y0, double x1, double y1, SampleBuffer out) {
+        refine(function, x0, y0, x1, y1, 0, out);
+    }
+
+    private void refine(DoubleUnaryOperator function, double x0, double y0, double x1, double y1, int depth, SampleBuffer out) {
+        boolean nan0 = Double.isNaN(y0);
+        boolean nan1 = Double.isNaN(y1);
+        if ((nan0 && nan1) || depth >= maxDepth || remainingBudget <= 0) {
+            out.add(x1, y1);
+            return;
+        }
+
+        double dx = x1 - x0;
+        double xm = x0 + dx / 2;
+        double ym = function.applyAsDouble(xm);
+        remainingBudget--;
+
+        boolean subdivide;
+        if (nan0 || nan1 || Double.isNaN(ym)) {
+            // Edge of the domain, narrow it down so the curve ends close to it
+            subdivide = dx > minIntervalWidth;
+        } else {
+            double jump = Math.abs(y1 - y0);
+            double deviation = Math.abs(ym - (y0 + y1) / 2);
+
+            if (jump > pixelHeight && isJumpUnsplit(y0, ym, y1, jump)) {
+                // The midpoint doesn't split the jump like a continuous curve would: keep narrowing it down
+                // and break the curve once it is confined to a sub-pixel interval
+                if (dx <= minIntervalWidth) {
+                    out.add(xm, Double.NaN);
+                    out.add(x1, y1);
+                    return;
+                }
+                subdivide = true;
+            } else {
+                subdivide = (deviation > tolerance && dx > minIntervalWidth) || (jump > pixelHeight && dx > pixelWidth);
+            }
+        }
+
+        if (subdivide) {
+            refine(function, x0, y0, xm, ym, depth + 1, out);
+            refine(function, xm, ym, x1, y1, depth + 1, out);
+        } else {
+            out.add(xm, ym);
+            out.add(x1, y1);
+        }
+    }
+
+    // True when the midpoint lies outside the two end values (a pole) or one half keeps almost the whole jump (a step)
+    private boolean isJumpUnsplit(double y0, double ym, double y1, double jump) {
+        double low = Math.min(y0, y1) - tolerance;
+        double high = Math.max(y0, y1) + tolerance;
+        if (ym < low || ym > high) {
+            return true;
+        }
+        return Math.max(Math.abs(ym - y0), Math.abs(y1 - ym)) > 0.9 * jump;
+    }
+}
@@ -0,0 +1,200 @@
+package calculator;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Headless entry point: evaluates one expression per input line over an x range and streams the samples out
+// as CSV or packed little-endian doubles. Never touches GUI or AWT, and memory use doesn't grow with the ranges.
+//
+//   java -cp bin calculator.BatchEvaluator [--input FILE] [--output FILE] [--format csv|binary]
+//                                          [--degrees] [--range FROM:TO:COUNT]
+//
+// Input lines are "expression" or "expression; from; to; count", blank lines and lines starting with # are
+// skipped. COUNT samples are taken evenly from FROM to TO inclusive; the default range is -10:10:201.
+// CSV output has a "line,x,y" header and one row per sample; binary output is x then y per sample, with
+// the expressions back to back in input order. Lines that fail are reported on stderr and skipped.
+public class BatchEvaluator {
+    private static final int CHUNK_SAMPLES = 4096;
+    private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+    private static final int MAX_CSV_ROW_BYTES = 128; // Line number and two doubles with separators
+
+    public enum Format { CSV, BINARY }
+
+    public record Range(double from, double to, long count) {
+        public Range {
+            if (count < 1 || !Double.isFinite(from) || !Double.isFinite(to)) {
+                throw new IllegalArgumentException("Invalid range " + from + ":" + to + ":" + count);
+            }
+        }
+
+        double x(long index) {
+            return count == 1 ? from : from + (to - from) * index / (count - 1);
+        }
+    }
+
+    private final WritableByteChannel out;
+    private final Format format;
+    private final boolean useRadians;
+    private final Range defaultRange;
+    private final ExpressionCache expressionCache = new ExpressionCache(); // Repeated formulas are parsed once
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final double[] xs = new double[CHUNK_SAMPLES];
+    private final double[] ys = new double[CHUNK_SAMPLES];
+
+    public BatchEvaluator(WritableByteChannel out, Format format, boolean useRadians, Range defaultRange) {
+        this.out = out;
+        this.format = format;
+        this.useRadians = useRadians;
+        this.defaultRange = defaultRange;
+    }
+
+    public static void main(String[] args) {
+        Path input = null;
+        Path output = null;
+        Format format = Format.CSV;
+        boolean useRadians = true;
+        Range range = new Range(-10, 10, 201);
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--input" -> input = Path.of(argument(args, ++i));
+                    case "--output" -> output = Path.of(argument(args, ++i));
+                    case "--format" -> format = Format.valueOf(argument(args, ++i).toUpperCase());
+                    case "--degrees" -> useRadians = false;
+                    case "--range" -> range = parseRange(argument(args, ++i).split(":"), 0);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchEvaluator [--input FILE] [--output FILE] [--format csv|binary] [--degrees] [--range FROM:TO:COUNT]");
+            System.exit(2);
+        }
+
+        int failed;
+        try (BufferedReader reader = input != null
+                 ? Files.newBufferedReader(input, StandardCharsets.UTF_8)
+                 : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+             WritableByteChannel channel = output != null
+                 ? FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                 : new FileOutputStream(FileDescriptor.out).getChannel()) {
+            failed = new BatchEvaluator(channel, format, useRadians, range).run(reader);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    // Evaluates every line of input into the channel; returns how many lines failed
+    public int run(BufferedReader input) throws IOException {
+        if (format == Format.CSV) {
+            putAscii("line,x,y\n");
+        }
+
+        int failed = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.strip().startsWith("#")) {
+                continue;
+            }
+            try {
+                evaluateLine(lineNumber, line);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Line " + lineNumber + ": " + e.getMessage());
+                failed++;
+            }
+        }
+        flush();
+        return failed;
+    }
+
+    private void evaluateLine(int lineNumber, String line) throws IOException {
+        String[] fields = line.split(";");
+        if (fields.length != 1 && fields.length != 4) {
+            throw new IllegalArgumentException("Expected \"expression\" or \"expression; from; to; count\"");
+        }
+        Range range = fields.length == 4 ? parseRange(fields, 1) : defaultRange;
+        Token function = expressionCache.get(fields[0], useRadians).getOptimized(); // Optimized trees are in radians
+
+        for (long start = 0; start < range.count(); start += CHUNK_SAMPLES) {
+            int length = (int) Math.min(CHUNK_SAMPLES, range.count() - start);
+            for (int i = 0; i < length; i++) {
+                xs[i] = range.x(start + i);
+            }
+            Parser.evaluate(function, true, xs, ys, 0, length);
+            write(lineNumber, length);
+        }
+    }
+
+    private void write(int lineNumber, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (format == Format.BINARY) {
+                if (buffer.remaining() < 16) {
+                    flush();
+                }
+                buffer.putDouble(xs[i]);
+                buffer.putDouble(ys[i]);
+            } else {
+                if (buffer.remaining() < MAX_CSV_ROW_BYTES) {
+                    flush();
+                }
+                putAscii(Integer.toString(lineNumber));
+                buffer.put((byte) ',');
+                putAscii(Double.toString(xs[i]));
+                buffer.put((byte) ',');
+                putAscii(Double.toString(ys[i]));
+                buffer.put((byte) '\n');
+            }
+        }
+    }
+
+    // Numbers and the header are plain ASCII, so chars go straight into the buffer without an encoder
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Range parseRange(String[] fields, int offset) {
+        if (fields.length - offset != 3) {
+            throw new IllegalArgumentException("Expected a range as from, to and count");
+        }
+        try {
+            return new Range(Double.parseDouble(fields[offset].strip()), Double.parseDouble(fields[offset + 1].strip()),
+                Long.parseLong(fields[offset + 2].strip()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in range: " + e.getMessage());
+        }
+    }
+
+    private static String argument(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
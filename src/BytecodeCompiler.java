@@ -0,0 +1,344 @@
+package calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+public class BytecodeCompiler {
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_CONSTANT_POOL_COUNT = 65535;
+
+    // Bytecode instructions used by the generated class
+    private static final int ALOAD_0 = 0x2a;
+    private static final int DLOAD = 0x18;
+    private static final int DLOAD_1 = 0x27;
+    private static final int DSTORE = 0x39;
+    private static final int DUP2 = 0x5c;
+    private static final int WIDE = 0xc4;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    // Turns the parse tree into a hidden class whose applyAsDouble is the formula in plain bytecode,
+    // so C2 can inline and optimise it like hand-written Java. Repeated subexpressions are computed
+    // once and kept in local variables.
+    public static DoubleUnaryOperator compile(Token node, boolean useRadians) {
+        return compile(node, useRadians, false);
+    }
+
+    // With fastMath the functions call FastMath instead of Math, and ^ with a small positive integer exponent
+    // is inlined as the multiplications FastMath.pow would do
+    public static DoubleUnaryOperator compile(Token node, boolean useRadians, boolean fastMath) {
+        byte[] classBytes = new ClassWriter(useRadians, fastMath).write(ExpressionDag.of(node));
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            return (DoubleUnaryOperator) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define compiled expression", e);
+        }
+    }
+
+    private static class ClassWriter {
+        private final boolean useRadians;
+        private final boolean fastMath;
+        private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+        private final Map<String, Integer> constantIndexes = new HashMap<>();
+        private int constantPoolCount = 1;
+
+        private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+        private final DataOutputStream code = new DataOutputStream(codeBytes);
+        private int stackSlots;
+        private int maxStackSlots;
+
+        private int[] useCounts;
+        private int[] localSlots; // Local variable holding each shared node's value once computed, 0 if none yet
+        private int maxLocals = 3; // this + one double argument
+
+        ClassWriter(boolean useRadians, boolean fastMath) {
+            this.useRadians = useRadians;
+            this.fastMath = fastMath;
+        }
+
+        byte[] write(ExpressionDag dag) {
+            try {
+                int thisClass = classEntry("calculator/CompiledFunction");
+                int superClass = classEntry("java/lang/Object");
+                int interfaceClass = classEntry("java/util/function/DoubleUnaryOperator");
+                int objectInit = methodEntry("java/lang/Object", "<init>", "()V");
+                int codeName = utf8Entry("Code");
+                int initName = utf8Entry("<init>");
+                int initDescriptor = utf8Entry("()V");
+                int applyName = utf8Entry("applyAsDouble");
+                int applyDescriptor = utf8Entry("(D)D");
+
+                useCounts = dag.getUseCounts();
+                localSlots = new int[dag.getNodeCount()];
+                emit(dag.getRoot(0));
+                code.writeByte(DRETURN);
+                if (codeBytes.size() > MAX_CODE_LENGTH || constantPoolCount > MAX_CONSTANT_POOL_COUNT || maxStackSlots > 65535 || maxLocals > 65535) {
+                    throw new IllegalArgumentException("Expression too large to compile");
+                }
+
+                ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(classBytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);  // Minor version
+                out.writeShort(52); // Major version, no stack map frames needed for straight-line code
+                out.writeShort(constantPoolCount);
+                constantPoolBytes.writeTo(out);
+                out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(interfaceClass);
+                out.writeShort(0); // Fields
+                out.writeShort(2); // Methods
+
+                // public <init>() { super(); }
+                out.writeShort(0x0001);
+                out.writeShort(initName);
+                out.writeShort(initDescriptor);
+                out.writeShort(1);
+                out.writeShort(codeName);
+                out.writeInt(12 + 5);
+                out.writeShort(1); // Max stack
+                out.writeShort(1); // Max locals
+                out.writeInt(5);
+                out.writeByte(ALOAD_0);
+                out.writeByte(INVOKESPECIAL);
+                out.writeShort(objectInit);
+                out.writeByte(RETURN);
+                out.writeShort(0); // Exception table
+                out.writeShort(0); // Attributes
+
+                // public double applyAsDouble(double x) { return <expression>; }
+                out.writeShort(0x0001);
+                out.writeShort(applyName);
+                out.writeShort(applyDescriptor);
+                out.writeShort(1);
+                out.writeShort(codeName);
+                out.writeInt(12 + codeBytes.size());
+                out.writeShort(maxStackSlots);
+                out.writeShort(maxLocals);
+                out.writeInt(codeBytes.size());
+                codeBytes.writeTo(out);
+                out.writeShort(0);
+                out.writeShort(0);
+
+                out.writeShort(0); // Class attributes
+                return classBytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // Not thrown by in-memory streams
+            }
+        }
+
+        private void emit(ExpressionDag.Node node) throws IOException {
+            int slot = localSlots[node.getId()];
+            if (slot != 0) {
+                local(DLOAD, slot); // Already computed
+                push();
+                return;
+            }
+
+            switch (node.getType()) {
+                case CONSTANT -> {
+                    double value = node.getConstant();
+                    if (Double.doubleToRawLongBits(value) == 0L) {
+                        code.writeByte(DCONST_0);
+                    } else if (value == 1.0) {
+                        code.writeByte(DCONST_1);
+                    } else {
+                        code.writeByte(LDC2_W);
+                        code.writeShort(doubleEntry(value));
+                    }
+                    push();
+                }
+                case VARIABLE -> {
+                    code.writeByte(DLOAD_1);
+                    push();
+                }
+                case OPERATOR -> {
+                    int chainExponent = fastMath && node.getValue().equals("^") ? chainExponent(node.getRight()) : 0;
+                    if (chainExponent > 0) {
+                        emitMultiplyChain(node.getLeft(), chainExponent);
+                    } else {
+                        emit(node.getLeft());
+                        emit(node.getRight());
+                        switch (node.getValue()) {
+                            case "+" -> code.writeByte(DADD);
+                            case "-" -> code.writeByte(DSUB);
+                            case "×" -> code.writeByte(DMUL);
+                            case "÷" -> code.writeByte(DDIV);
+                            case "^" -> invokeKernel("pow", "(DD)D");
+                            default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                        }
+                        stackSlots -= 2;
+                    }
+                }
+                case FUNCTION -> {
+                    String method = switch (node.getValue()) {
+                        case "sin" -> "sin";
+                        case "cos" -> "cos";
+                        case "tan" -> "tan";
+                        case "log" -> "log10";
+                        case "ln" -> "log";
+                        case "√" -> "sqrt";
+                        default -> throw new IllegalArgumentException("Unknown function: " + node.getValue());
+                    };
+                    emit(node.getArgument());
+                    if (!useRadians) {
+                        invokeMath("toRadians", "(D)D"); // Convert degrees to radians
+                    }
+                    invokeKernel(method, "(D)D");
+                }
+                default -> throw new IllegalArgumentException("Unexpected token type: " + node.getType());
+            }
+
+            if (useCounts[node.getId()] > 1 && (node.getType() == Token.TokenType.OPERATOR || node.getType() == Token.TokenType.FUNCTION)) {
+                // Keep a copy for the other uses
+                code.writeByte(DUP2);
+                push();
+                localSlots[node.getId()] = maxLocals;
+                local(DSTORE, maxLocals);
+                stackSlots -= 2;
+                maxLocals += 2; // Doubles take two local variable slots
+            }
+        }
+
+        // The exponent if node is an integer constant FastMath.pow takes as a multiplication chain, else 0
+        private static int chainExponent(ExpressionDag.Node node) {
+            if (node.getType() != Token.TokenType.CONSTANT) {
+                return 0;
+            }
+            double value = node.getConstant();
+            return value == (int) value && value >= 1 && value <= FastMath.MAX_CHAIN_EXPONENT ? (int) value : 0;
+        }
+
+        // base^exponent, with base kept in a local for FastMath.multiplyChain's squarings and multiplications
+        private void emitMultiplyChain(ExpressionDag.Node base, int exponent) throws IOException {
+            emit(base);
+            int slot = maxLocals;
+            maxLocals += 2;
+            local(DSTORE, slot);
+            stackSlots -= 2;
+            emitPower(slot, exponent);
+        }
+
+        private void emitPower(int slot, int exponent) throws IOException {
+            if (exponent == 1) {
+                local(DLOAD, slot);
+                push();
+                return;
+            }
+            if ((exponent & 1) == 0) {
+                emitPower(slot, exponent >> 1);
+                code.writeByte(DUP2); // Square
+                push();
+            } else {
+                emitPower(slot, exponent - 1);
+                local(DLOAD, slot);
+                push();
+            }
+            code.writeByte(DMUL);
+            stackSlots -= 2;
+        }
+
+        private void local(int opcode, int slot) throws IOException {
+            if (slot > 255) {
+                code.writeByte(WIDE);
+                code.writeByte(opcode);
+                code.writeShort(slot);
+            } else {
+                code.writeByte(opcode);
+                code.writeByte(slot);
+            }
+        }
+
+        private void push() {
+            stackSlots += 2; // Doubles take two operand stack slots
+            maxStackSlots = Math.max(maxStackSlots, stackSlots);
+        }
+
+        private void invokeMath(String name, String descriptor) throws IOException {
+            code.writeByte(INVOKESTATIC);
+            code.writeShort(methodEntry("java/lang/Math", name, descriptor));
+        }
+
+        // Math or FastMath, whichever the mode calls for
+        private void invokeKernel(String name, String descriptor) throws IOException {
+            code.writeByte(INVOKESTATIC);
+            code.writeShort(methodEntry(fastMath ? "calculator/FastMath" : "java/lang/Math", name, descriptor));
+        }
+
+        private int utf8Entry(String value) throws IOException {
+            Integer index = constantIndexes.get("U" + value);
+            if (index == null) {
+                constantPool.writeByte(1);
+                constantPool.writeUTF(value);
+                index = constantPoolCount++;
+                constantIndexes.put("U" + value, index);
+            }
+            return index;
+        }
+
+        private int classEntry(String name) throws IOException {
+            Integer index = constantIndexes.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8Entry(name);
+                constantPool.writeByte(7);
+                constantPool.writeShort(nameIndex);
+                index = constantPoolCount++;
+                constantIndexes.put("C" + name, index);
+            }
+            return index;
+        }
+
+        private int methodEntry(String owner, String name, String descriptor) throws IOException {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = constantIndexes.get(key);
+            if (index == null) {
+                int ownerIndex = classEntry(owner);
+                int nameIndex = utf8Entry(name);
+                int descriptorIndex = utf8Entry(descriptor);
+                constantPool.writeByte(12); // NameAndType
+                constantPool.writeShort(nameIndex);
+                constantPool.writeShort(descriptorIndex);
+                int nameAndType = constantPoolCount++;
+                constantPool.writeByte(10); // Methodref
+                constantPool.writeShort(ownerIndex);
+                constantPool.writeShort(nameAndType);
+                index = constantPoolCount++;
+                constantIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        private int doubleEntry(double value) throws IOException {
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = constantIndexes.get(key);
+            if (index == null) {
+                constantPool.writeByte(6);
+                constantPool.writeDouble(value);
+                index = constantPoolCount;
+                constantPoolCount += 2; // Doubles take two constant pool entries
+                constantIndexes.put(key, index);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package calculator;
+
+import java.util.Arrays;
+
+public class CompiledExpression {
+    // Opcodes of the postfix program
+    static final int PUSH_CONSTANT = 0;
+    static final int PUSH_X = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int DIVIDE = 5;
+    static final int POWER = 6;
+    static final int TO_RADIANS = 7;
+    static final int SIN = 8;
+    static final int COS = 9;
+    static final int TAN = 10;
+    static final int LOG = 11;
+    static final int LN = 12;
+    static final int SQRT = 13;
+    static final int STORE = 14; // Copies the top of the stack to the slot in the next program entry
+    static final int LOAD = 15;  // Pushes the slot in the next program entry
+
+    private final int[] program;
+    private final double[] constants;
+    private final boolean fastMath;
+    private final double[] stack; // Reused by every evaluation, so instances are not thread-safe
+    private final double[] slots; // Values of subexpressions used more than once, likewise
+
+    private CompiledExpression(int[] program, double[] constants, boolean fastMath, int maxStackDepth, int slotCount) {
+        this.program = program;
+        this.constants = constants;
+        this.fastMath = fastMath;
+        this.stack = new double[maxStackDepth];
+        this.slots = new double[slotCount];
+    }
+
+    // Compiles the parse tree once; evaluate(x) then gives the same results as Parser.evaluate
+    public static CompiledExpression compile(Token node, boolean useRadians) {
+        Compiler compiler = new Compiler(useRadians);
+        compiler.emit(node);
+        return compiler.build(false);
+    }
+
+    // Compiles the first tree of dag, computing each subexpression it repeats once per x and reusing its value
+    // from a slot, like BytecodeCompiler does with locals. With fastMath, ^ and the functions come from FastMath.
+    public static CompiledExpression compile(ExpressionDag dag, boolean useRadians, boolean fastMath) {
+        Compiler compiler = new Compiler(useRadians);
+        compiler.emit(dag.getRoot(0), dag.getUseCounts(), new int[dag.getNodeCount()]);
+        return compiler.build(fastMath);
+    }
+
+    // Returns an independent instance sharing the program, for use on another thread
+    public CompiledExpression copy() {
+        return new CompiledExpression(program, constants, fastMath, stack.length, slots.length);
+    }
+
+    public double evaluate(double x) {
+        final int[] program = this.program;
+        final double[] constants = this.constants;
+        final double[] stack = this.stack;
+        final double[] slots = this.slots;
+        final boolean fastMath = this.fastMath;
+        int sp = 0;
+        int cp = 0;
+
+        for (int pc = 0; pc < program.length; pc++) {
+            switch (program[pc]) {
+                case PUSH_CONSTANT -> stack[sp++] = constants[cp++];
+                case PUSH_X -> stack[sp++] = x;
+                case ADD -> { sp--; stack[sp - 1] += stack[sp]; }
+                case SUBTRACT -> { sp--; stack[sp - 1] -= stack[sp]; }
+                case MULTIPLY -> { sp--; stack[sp - 1] *= stack[sp]; }
+                case DIVIDE -> { sp--; stack[sp - 1] /= stack[sp]; }
+                case POWER -> { sp--; stack[sp - 1] = fastMath ? FastMath.pow(stack[sp - 1], stack[sp]) : Math.pow(stack[sp - 1], stack[sp]); }
+                case TO_RADIANS -> stack[sp - 1] = Math.toRadians(stack[sp - 1]);
+                case SIN -> stack[sp - 1] = fastMath ? FastMath.sin(stack[sp - 1]) : Math.sin(stack[sp - 1]);
+                case COS -> stack[sp - 1] = fastMath ? FastMath.cos(stack[sp - 1]) : Math.cos(stack[sp - 1]);
+                case TAN -> stack[sp - 1] = fastMath ? FastMath.tan(stack[sp - 1]) : Math.tan(stack[sp - 1]);
+                case LOG -> stack[sp - 1] = fastMath ? FastMath.log10(stack[sp - 1]) : Math.log10(stack[sp - 1]);
+                case LN -> stack[sp - 1] = fastMath ? FastMath.log(stack[sp - 1]) : Math.log(stack[sp - 1]);
+                case SQRT -> stack[sp - 1] = Math.sqrt(stack[sp - 1]);
+                case STORE -> slots[program[++pc]] = stack[sp - 1];
+                default -> stack[sp++] = slots[program[++pc]]; // LOAD
+            }
+        }
+
+        return stack[0];
+    }
+
+    private static class Compiler {
+        private final boolean useRadians;
+        private int[] program = new int[16];
+        private int programLength;
+        private double[] constants = new double[8];
+        private int constantCount;
+        private int depth;
+        private int maxDepth;
+        private int slotCount;
+
+        Compiler(boolean useRadians) {
+            this.useRadians = useRadians;
+        }
+
+        CompiledExpression build(boolean fastMath) {
+            return new CompiledExpression(Arrays.copyOf(program, programLength), Arrays.copyOf(constants, constantCount),
+                fastMath, maxDepth, slotCount);
+        }
+
+        // A node used more than once is stored to a slot the first time and loaded after; slots[id] is its slot
+        // plus one, 0 until it has been computed
+        void emit(ExpressionDag.Node node, int[] useCounts, int[] slots) {
+            int slot = slots[node.getId()];
+            if (slot != 0) {
+                push(LOAD);
+                append(slot - 1);
+                return;
+            }
+
+            switch (node.getType()) {
+                case CONSTANT -> constant(node.getConstant());
+                case VARIABLE -> push(PUSH_X);
+                case OPERATOR -> {
+                    emit(node.getLeft(), useCounts, slots);
+                    emit(node.getRight(), useCounts, slots);
+                    append(operatorOpcode(node.getValue()));
+                    depth--;
+                }
+                case FUNCTION -> {
+                    int op = functionOpcode(node.getValue());
+                    emit(node.getArgument(), useCounts, slots);
+                    if (!useRadians) {
+                        append(TO_RADIANS);
+                    }
+                    append(op);
+                }
+                default -> throw new IllegalArgumentException("Unexpected node type: " + node.getType());
+            }
+
+            if (useCounts[node.getId()] > 1 && node.getType() != Token.TokenType.CONSTANT && node.getType() != Token.TokenType.VARIABLE) {
+                slots[node.getId()] = ++slotCount;
+                append(STORE);
+                append(slotCount - 1);
+            }
+        }
+
+        void emit(Token node) {
+            if (node == null) {
+                throw new IllegalArgumentException("Invalid syntax tree");
+            }
+
+            switch (node.getType()) {
+                case CONSTANT -> constant(Parser.constantValue(node));
+                case VARIABLE -> {
+                    if (Parser.isY(node)) {
+                        throw Parser.yWithoutValue();
+                    }
+                    push(PUSH_X);
+                }
+                case OPERATOR -> {
+                    emit(node.getLeft());
+                    emit(node.getRight());
+                    append(operatorOpcode(node.getValue()));
+                    depth--;
+                }
+                case FUNCTION -> {
+                    int op = functionOpcode(node.getValue());
+                    emit(node.getArgument());
+                    if (!useRadians) {
+                        append(TO_RADIANS); // Convert degrees to radians
+                    }
+                    append(op);
+                }
+                default -> throw new IllegalArgumentException("Unexpected token type: " + node.getType());
+            }
+        }
+
+        private void constant(double value) {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+            }
+            constants[constantCount++] = value;
+            push(PUSH_CONSTANT);
+        }
+
+        private static int operatorOpcode(String operator) {
+            return switch (operator) {
+                case "+" -> ADD;
+                case "-" -> SUBTRACT;
+                case "×" -> MULTIPLY;
+                case "÷" -> DIVIDE;
+                case "^" -> POWER;
+                default -> throw new IllegalArgumentException("Unknown operator: " + operator);
+            };
+        }
+
+        private static int functionOpcode(String function) {
+            return switch (function) {
+                case "sin" -> SIN;
+                case "cos" -> COS;
+                case "tan" -> TAN;
+                case "log" -> LOG;
+                case "ln" -> LN;
+                case "√" -> SQRT;
+                default -> throw new IllegalArgumentException("Unknown function: " + function);
+            };
+        }
+
+        private void push(int op) {
+            append(op);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void append(int op) {
+            if (programLength == program.length) {
+                program = Arrays.copyOf(program, programLength * 2);
+            }
+            program[programLength++] = op;
+        }
+    }
+}
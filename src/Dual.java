@@ -0,0 +1,5 @@
+package calculator;
+
+// A function's value at one x with its first and second derivatives there
+public record Dual(double value, double slope, double curvature) {
+}
@@ -0,0 +1,301 @@
+package calculator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Forward-mode automatic differentiation: every node carries its value and its first and second derivatives
+// with respect to X, so one pass over the expression gives f(x), f'(x) and f''(x) to full precision, without
+// the extra evaluations and cancellation of finite differences. Values are bit-identical to Parser.evaluate.
+public class DualEvaluator {
+    private static final int BLOCK_SIZE = 256; // x values evaluated per pass over the nodes, as in FunctionFamily
+    private static final double LN_10 = Math.log(10);
+
+    private final Token function;
+    private final boolean useRadians;
+    private final ExpressionDag dag;
+    private final boolean[] varying;  // Depends on X; the other nodes have one value and zero derivatives
+    private final double[] constants; // Values of the nodes that don't depend on X
+    private final int[] companions;   // For sin(u) the id of an earlier cos(u) and vice versa, else -1
+
+    // Node buffers for one x, kept per thread so that the solvers' one-at-a-time evaluations allocate nothing
+    private final ThreadLocal<double[][][]> scalarWorkspaces = ThreadLocal.withInitial(() -> newWorkspace(1, true));
+    private final ThreadLocal<double[]> scalarOutputs = ThreadLocal.withInitial(() -> new double[4]); // x, f, f', f''
+
+    public DualEvaluator(Token function, boolean useRadians) {
+        this.function = function;
+        this.useRadians = useRadians;
+        this.dag = ExpressionDag.of(function);
+
+        int nodeCount = dag.getNodeCount();
+        varying = new boolean[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            ExpressionDag.Node node = dag.getNode(id);
+            varying[id] = node.getType() == Token.TokenType.VARIABLE
+                || (node.getLeft() != null && varying[node.getLeft().getId()])
+                || (node.getRight() != null && varying[node.getRight().getId()]);
+        }
+        constants = new double[nodeCount];
+        dag.evaluate(useRadians, 0, constants);
+
+        // sin' needs cos and cos' needs sin. If the expression has both of the same argument, the later node takes
+        // the other one from the earlier node's values instead of calling the second transcendental again.
+        companions = new int[nodeCount];
+        Arrays.fill(companions, -1);
+        Map<Integer, Integer> sines = new HashMap<>();
+        Map<Integer, Integer> cosines = new HashMap<>();
+        for (int id = 0; id < nodeCount; id++) {
+            ExpressionDag.Node node = dag.getNode(id);
+            if (node.getType() != Token.TokenType.FUNCTION || !varying[id]) {
+                continue;
+            }
+            int argument = node.getArgument().getId();
+            if (node.getValue().equals("sin")) {
+                companions[id] = cosines.getOrDefault(argument, -1);
+                sines.putIfAbsent(argument, id);
+            } else if (node.getValue().equals("cos")) {
+                companions[id] = sines.getOrDefault(argument, -1);
+                cosines.putIfAbsent(argument, id);
+            }
+        }
+    }
+
+    public Token getFunction() { return function; }
+
+    public Dual evaluate(double x) {
+        double[][][] workspace = scalarWorkspaces.get();
+        double[] out = scalarOutputs.get();
+        out[0] = x;
+        evaluate(workspace[0], workspace[1], workspace[2], out, 0, out, 1, out, 2, out, 3, 1);
+        return new Dual(out[1], out[2], out[3]);
+    }
+
+    // Fills the range [offset, offset + length) of values, slopes and curvatures with f, f' and f'' at the
+    // same range of xs. curvatures may be null, the second derivatives are then not computed at all.
+    public void evaluate(double[] xs, double[] values, double[] slopes, double[] curvatures, int offset, int length) {
+        double[][][] workspace = newWorkspace(Math.max(1, Math.min(length, BLOCK_SIZE)), curvatures != null);
+        evaluate(workspace[0], workspace[1], workspace[2], xs, offset, values, offset, slopes, offset, curvatures, offset, length);
+    }
+
+    // Per-node buffers of blockSize entries; the ones that never change between blocks are filled in here
+    private double[][][] newWorkspace(int blockSize, boolean withCurvatures) {
+        int nodeCount = dag.getNodeCount();
+        double[][] nodeValues = new double[nodeCount][];
+        double[][] nodeSlopes = new double[nodeCount][];
+        double[][] nodeCurvatures = withCurvatures ? new double[nodeCount][] : null;
+        for (int id = 0; id < nodeCount; id++) {
+            nodeValues[id] = new double[blockSize];
+            nodeSlopes[id] = new double[blockSize];
+            if (nodeCurvatures != null) {
+                nodeCurvatures[id] = new double[blockSize];
+            }
+            if (!varying[id]) {
+                Arrays.fill(nodeValues[id], constants[id]); // Same for every block, derivatives stay zero
+            } else if (dag.getNode(id).getType() == Token.TokenType.VARIABLE) {
+                Arrays.fill(nodeSlopes[id], 1);
+            }
+        }
+        return new double[][][] {nodeValues, nodeSlopes, nodeCurvatures};
+    }
+
+    private void evaluate(double[][] nodeValues, double[][] nodeSlopes, double[][] nodeCurvatures, double[] xs, int xOffset,
+                          double[] values, int valueOffset, double[] slopes, int slopeOffset, double[] curvatures, int curvatureOffset, int length) {
+        int nodeCount = dag.getNodeCount();
+        int blockSize = nodeValues.length > 0 ? nodeValues[0].length : 1;
+        if (curvatures == null) {
+            nodeCurvatures = null;
+        }
+        int root = dag.getRoot(0).getId();
+        for (int start = 0; start < length; start += blockSize) {
+            int count = Math.min(blockSize, length - start);
+            for (int id = 0; id < nodeCount; id++) {
+                if (varying[id]) {
+                    evaluateNode(dag.getNode(id), nodeValues, nodeSlopes, nodeCurvatures, xs, xOffset + start, count);
+                }
+            }
+            System.arraycopy(nodeValues[root], 0, values, valueOffset + start, count);
+            System.arraycopy(nodeSlopes[root], 0, slopes, slopeOffset + start, count);
+            if (curvatures != null) {
+                System.arraycopy(nodeCurvatures[root], 0, curvatures, curvatureOffset + start, count);
+            }
+        }
+    }
+
+    // Values use the same operations in the same order as Parser.evaluate; the derivatives follow from the
+    // sum, product, quotient and chain rules
+    private void evaluateNode(ExpressionDag.Node node, double[][] values, double[][] slopes, double[][] curvatures, double[] xs, int xOffset, int count) {
+        int id = node.getId();
+        double[] v = values[id];
+        double[] s = slopes[id];
+        double[] c = curvatures != null ? curvatures[id] : null;
+        switch (node.getType()) {
+            case VARIABLE -> System.arraycopy(xs, xOffset, v, 0, count); // Slope 1 and curvature 0 are filled in once
+            case OPERATOR -> {
+                int left = node.getLeft().getId();
+                int right = node.getRight().getId();
+                double[] a = values[left], da = slopes[left], dda = c != null ? curvatures[left] : null;
+                double[] b = values[right], db = slopes[right], ddb = c != null ? curvatures[right] : null;
+                switch (node.getValue()) {
+                    case "+" -> {
+                        for (int i = 0; i < count; i++) {
+                            v[i] = a[i] + b[i];
+                            s[i] = da[i] + db[i];
+                            if (c != null) c[i] = dda[i] + ddb[i];
+                        }
+                    }
+                    case "-" -> {
+                        for (int i = 0; i < count; i++) {
+                            v[i] = a[i] - b[i];
+                            s[i] = da[i] - db[i];
+                            if (c != null) c[i] = dda[i] - ddb[i];
+                        }
+                    }
+                    case "×" -> {
+                        for (int i = 0; i < count; i++) {
+                            v[i] = a[i] * b[i];
+                            s[i] = da[i] * b[i] + a[i] * db[i];
+                            if (c != null) c[i] = dda[i] * b[i] + 2 * da[i] * db[i] + a[i] * ddb[i];
+                        }
+                    }
+                    case "÷" -> {
+                        for (int i = 0; i < count; i++) {
+                            v[i] = a[i] / b[i];
+                            s[i] = (da[i] - v[i] * db[i]) / b[i];
+                            if (c != null) c[i] = (dda[i] - 2 * s[i] * db[i] - v[i] * ddb[i]) / b[i];
+                        }
+                    }
+                    case "^" -> {
+                        if (!varying[right]) {
+                            powerRule(constants[right], a, da, dda, v, s, c, count);
+                        } else if (!varying[left]) {
+                            // Constant base: a^b ln(a) b'
+                            double logBase = Math.log(constants[left]);
+                            for (int i = 0; i < count; i++) {
+                                v[i] = Math.pow(a[i], b[i]);
+                                s[i] = v[i] * logBase * db[i];
+                                if (c != null) c[i] = v[i] * logBase * (logBase * db[i] * db[i] + ddb[i]);
+                            }
+                        } else {
+                            // a^b = e^(b ln a), so (a^b)' = a^b g with g = (b ln a)', and (a^b)'' = a^b (g² + g')
+                            for (int i = 0; i < count; i++) {
+                                v[i] = Math.pow(a[i], b[i]);
+                                double logBase = Math.log(a[i]);
+                                double ratio = da[i] / a[i];
+                                double g = db[i] * logBase + b[i] * ratio;
+                                s[i] = v[i] * g;
+                                if (c != null) {
+                                    double dg = ddb[i] * logBase + 2 * db[i] * ratio + b[i] * (dda[i] / a[i] - ratio * ratio);
+                                    c[i] = v[i] * (g * g + dg);
+                                }
+                            }
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                }
+            }
+            case FUNCTION -> {
+                int argument = node.getArgument().getId();
+                double[] a = values[argument], da = slopes[argument], dda = c != null ? curvatures[argument] : null;
+                switch (node.getValue()) {
+                    case "sin" -> {
+                        double[] cosines = companions[id] >= 0 ? values[companions[id]] : null;
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]), du = angle(da[i]);
+                            double sin = Math.sin(u);
+                            double cos = cosines != null ? cosines[i] : Math.cos(u);
+                            v[i] = sin;
+                            s[i] = cos * du;
+                            if (c != null) c[i] = cos * angle(dda[i]) - sin * du * du;
+                        }
+                    }
+                    case "cos" -> {
+                        double[] sines = companions[id] >= 0 ? values[companions[id]] : null;
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]), du = angle(da[i]);
+                            double sin = sines != null ? sines[i] : Math.sin(u);
+                            double cos = Math.cos(u);
+                            v[i] = cos;
+                            s[i] = -sin * du;
+                            if (c != null) c[i] = -cos * du * du - sin * angle(dda[i]);
+                        }
+                    }
+                    case "tan" -> {
+                        // tan' = 1 + tan², so no second transcendental is needed
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]), du = angle(da[i]);
+                            double tan = Math.tan(u);
+                            double secant2 = 1 + tan * tan;
+                            v[i] = tan;
+                            s[i] = secant2 * du;
+                            if (c != null) c[i] = secant2 * (2 * tan * du * du + angle(dda[i]));
+                        }
+                    }
+                    case "log" -> {
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]), ratio = angle(da[i]) / u;
+                            v[i] = Math.log10(u);
+                            s[i] = ratio / LN_10;
+                            if (c != null) c[i] = (angle(dda[i]) / u - ratio * ratio) / LN_10;
+                        }
+                    }
+                    case "ln" -> {
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]), ratio = angle(da[i]) / u;
+                            v[i] = Math.log(u);
+                            s[i] = ratio;
+                            if (c != null) c[i] = angle(dda[i]) / u - ratio * ratio;
+                        }
+                    }
+                    case "√" -> {
+                        for (int i = 0; i < count; i++) {
+                            double u = angle(a[i]);
+                            double root = Math.sqrt(u);
+                            v[i] = root;
+                            s[i] = angle(da[i]) / (2 * root);
+                            if (c != null) c[i] = (angle(dda[i]) - 2 * s[i] * s[i]) / (2 * root);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown function: " + node.getValue());
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected node type: " + node.getType());
+        }
+    }
+
+    // Constant exponent n: (a^n)' = n a^(n-1) a', which also covers negative bases with integer n. Squares
+    // are by far the most common power and get exact derivatives; otherwise a^(n-1) is a^n / a where that is
+    // representable, saving a second pow.
+    private static void powerRule(double n, double[] a, double[] da, double[] dda, double[] v, double[] s, double[] c, int count) {
+        if (n == 0) {
+            for (int i = 0; i < count; i++) {
+                v[i] = Math.pow(a[i], n); // 1 everywhere, derivatives stay zero
+            }
+            return;
+        }
+        if (n == 2) {
+            for (int i = 0; i < count; i++) {
+                v[i] = Math.pow(a[i], n);
+                s[i] = 2 * a[i] * da[i];
+                if (c != null) c[i] = 2 * (da[i] * da[i] + a[i] * dda[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            double power = Math.pow(a[i], n);
+            v[i] = power;
+            boolean divisible = a[i] != 0 && power != 0 && Double.isFinite(power);
+            double outer = divisible ? n * (power / a[i]) : n * Math.pow(a[i], n - 1);
+            s[i] = outer * da[i];
+            if (c != null) {
+                double outer2 = n == 1 ? 0 : (divisible ? (n - 1) * (outer / a[i]) : n * (n - 1) * Math.pow(a[i], n - 2));
+                c[i] = outer2 * da[i] * da[i] + outer * dda[i];
+            }
+        }
+    }
+
+    // Every function argument is converted like Parser.evaluate converts it. The conversion is linear, so applied
+    // to an argument's derivatives it gives them the π/180 chain factor of degree mode.
+    private double angle(double value) {
+        return useRadians ? value : Math.toRadians(value); // Convert degrees to radians
+    }
+}
@@ -0,0 +1,390 @@
+package calculator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Local HTTP front end to the evaluator, so other tools can use it without the window. Listens on the loopback
+// address only and runs every request on its own virtual thread where the JDK has them (21 and later), on a
+// cached thread pool otherwise.
+//
+//   java -cp bin calculator.EvaluationServer [--port N] [--max-samples N] [--max-concurrent N]
+//
+//   POST /parse[?angle=degrees]          body: expression text; response: its handle
+//   POST /evaluate/HANDLE                body: x values; response: the y values, in the same format
+//   GET  /sample/HANDLE?from=A&to=B&count=N   response: N samples from A to B inclusive as x, y pairs
+//
+// x values are either text, numbers separated by whitespace or commas with one y per line back, or with
+// Content-Type application/octet-stream little-endian doubles, answered the same way. Samples are always
+// little-endian doubles, laid out like BatchEvaluator's binary format. A handle is the normalized expression
+// and angle mode, encoded, so it stays valid for the life of the server and across restarts; the parsed trees
+// behind the handles are shared by all requests through one ExpressionCache.
+//
+// Backpressure: at most max-concurrent requests read their body, evaluate and answer at once, so no more than
+// that many bodies and results are in memory however many clients connect; the rest wait for a slot and get
+// 503 with Retry-After if none frees up within a second. Requests for more than max-samples values get 413.
+public class EvaluationServer {
+    public static final int DEFAULT_PORT = 8086;
+    public static final int DEFAULT_MAX_SAMPLES = 1_000_000;
+    public static final int DEFAULT_MAX_CONCURRENT = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final int BACKLOG = 4096; // Pending connections, for bursts of thousands of clients
+    private static final int CHUNK_SAMPLES = 4096;
+    private static final int MAX_EXPRESSION_BYTES = 1 << 16;
+    private static final int MAX_TEXT_BYTES_PER_SAMPLE = 32; // A double in full precision and a separator
+    private static final long QUEUE_TIMEOUT_MILLIS = 1000;
+    private static final String BINARY = "application/octet-stream";
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private final int maxSamples;
+    private final Semaphore slots;
+    private final ExpressionCache expressionCache = new ExpressionCache(4096);
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Bound to the loopback address at port, 0 for any free one; not serving until start
+    public EvaluationServer(int port, int maxSamples, int maxConcurrent) throws IOException {
+        if (maxSamples < 1 || maxConcurrent < 1) {
+            throw new IllegalArgumentException("Invalid limits " + maxSamples + " samples, " + maxConcurrent + " concurrent");
+        }
+        this.maxSamples = maxSamples;
+        this.slots = new Semaphore(maxConcurrent, true); // Fair, so waiting requests are served in arrival order
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/parse", exchange -> handle(exchange, "POST", this::parse));
+        server.createContext("/evaluate/", exchange -> handle(exchange, "POST", this::evaluate));
+        server.createContext("/sample/", exchange -> handle(exchange, "GET", this::sample));
+    }
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int maxSamples = DEFAULT_MAX_SAMPLES;
+        int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+        EvaluationServer server;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(argument(args, ++i));
+                    case "--max-samples" -> maxSamples = Integer.parseInt(argument(args, ++i));
+                    case "--max-concurrent" -> maxConcurrent = Integer.parseInt(argument(args, ++i));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            server = new EvaluationServer(port, maxSamples, maxConcurrent);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: EvaluationServer [--port N] [--max-samples N] [--max-concurrent N]");
+            System.exit(2);
+            return;
+        } catch (IOException e) {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        server.start();
+        System.err.println("Listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting requests, gives those in progress up to delaySeconds to finish, then stops their threads
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() where it exists; looked up reflectively so the code still
+    // compiles for and runs on Java 17
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool(); // Also on 19 and 20 without --enable-preview
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    // Thrown to answer with an error status and message
+    private static class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new RequestException(405, "Use " + method);
+                }
+                handler.handle(exchange);
+            } catch (RequestException e) {
+                if (e.status == 503) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    discardBody(exchange); // Unread, the client could see the connection reset before the answer
+                } else if (e.status == 413) {
+                    exchange.getResponseHeaders().set("Connection", "close"); // Rather than read the rest of the body
+                }
+                sendText(exchange, e.status, e.getMessage() + "\n");
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage() + "\n"); // Syntax errors, bad numbers and ranges
+            }
+        }
+    }
+
+    private void parse(HttpExchange exchange) throws IOException {
+        boolean useRadians = !"degrees".equals(queryParameters(exchange).getOrDefault("angle", "radians"));
+        checkLength(exchange, MAX_EXPRESSION_BYTES);
+        acquireSlot();
+        try {
+            String text = new String(readBody(exchange, MAX_EXPRESSION_BYTES), StandardCharsets.UTF_8);
+            if (expressionCache.get(text, useRadians).isTwoVariable()) {
+                throw Parser.yWithoutValue(); // Only X has values here
+            }
+            String handle = (useRadians ? "r" : "d")
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(ExpressionCache.normalize(text).getBytes(StandardCharsets.UTF_8));
+            sendText(exchange, 200, handle + "\n");
+        } finally {
+            slots.release();
+        }
+    }
+
+    private void evaluate(HttpExchange exchange) throws IOException {
+        Token function = function(exchange, "/evaluate/");
+        boolean binary = BINARY.equals(exchange.getRequestHeaders().getFirst("Content-Type"));
+        long maxBytes = (long) maxSamples * (binary ? 8 : MAX_TEXT_BYTES_PER_SAMPLE);
+        checkLength(exchange, maxBytes);
+
+        // The slot is taken before the body is read and kept until the answer is sent, so waiting requests
+        // hold nothing but their connection
+        acquireSlot();
+        try {
+            byte[] body = readBody(exchange, maxBytes);
+            double[] xs = binary ? readDoubles(body) : parseNumbers(new String(body, StandardCharsets.US_ASCII));
+            if (xs.length > maxSamples) {
+                throw new RequestException(413, "At most " + maxSamples + " x values per request");
+            }
+
+            double[] ys = new double[xs.length];
+            Parser.evaluate(function, true, xs, ys); // Optimized trees are in radians
+
+            if (binary) {
+                ByteBuffer buffer = ByteBuffer.allocate(ys.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.asDoubleBuffer().put(ys);
+                send(exchange, 200, BINARY, buffer.array());
+            } else {
+                StringBuilder text = new StringBuilder(ys.length * 20);
+                for (double y : ys) {
+                    text.append(y).append('\n');
+                }
+                sendText(exchange, 200, text.toString());
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    // Streamed a chunk at a time, so the response can be as long as the sample limit allows
+    private void sample(HttpExchange exchange) throws IOException {
+        Token function = function(exchange, "/sample/");
+        Map<String, String> parameters = queryParameters(exchange);
+        BatchEvaluator.Range range = new BatchEvaluator.Range(number(parameters, "from"), number(parameters, "to"),
+            (long) number(parameters, "count"));
+        if (range.count() > maxSamples) {
+            throw new RequestException(413, "At most " + maxSamples + " samples per request");
+        }
+
+        acquireSlot();
+        try {
+            exchange.getResponseHeaders().set("Content-Type", BINARY);
+            exchange.sendResponseHeaders(200, range.count() * 16);
+            double[] xs = new double[(int) Math.min(CHUNK_SAMPLES, range.count())];
+            double[] ys = new double[xs.length];
+            ByteBuffer buffer = ByteBuffer.allocate(xs.length * 16).order(ByteOrder.LITTLE_ENDIAN);
+            OutputStream out = exchange.getResponseBody();
+            for (long start = 0; start < range.count(); start += CHUNK_SAMPLES) {
+                int length = (int) Math.min(CHUNK_SAMPLES, range.count() - start);
+                for (int i = 0; i < length; i++) {
+                    xs[i] = range.x(start + i);
+                }
+                Parser.evaluate(function, true, xs, ys, 0, length);
+                buffer.clear();
+                for (int i = 0; i < length; i++) {
+                    buffer.putDouble(xs[i]);
+                    buffer.putDouble(ys[i]);
+                }
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    // Waits up to QUEUE_TIMEOUT_MILLIS for one of the evaluation slots
+    private void acquireSlot() {
+        try {
+            if (!slots.tryAcquire(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new RequestException(503, "Too many requests, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "Shutting down");
+        }
+    }
+
+    // The optimized tree of the handle that follows prefix in the request path
+    private Token function(HttpExchange exchange, String prefix) {
+        String handle = exchange.getRequestURI().getPath().substring(prefix.length());
+        if (handle.isEmpty() || (handle.charAt(0) != 'r' && handle.charAt(0) != 'd')) {
+            throw new RequestException(404, "Unknown handle " + handle);
+        }
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(handle.substring(1)), StandardCharsets.UTF_8);
+            return expressionCache.get(text, handle.charAt(0) == 'r').getOptimized();
+        } catch (IllegalArgumentException e) {
+            throw new RequestException(404, "Unknown handle " + handle); // Not base64, or not an expression
+        }
+    }
+
+    // Turns away a body declared too large before it waits for a slot; chunked bodies are checked as they are read
+    private static void checkLength(HttpExchange exchange, long maxBytes) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.strip()) > maxBytes) {
+                    throw new RequestException(413, "Request body larger than " + maxBytes + " bytes");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid Content-Length " + length);
+            }
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange, long maxBytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (body.size() + read > maxBytes) {
+                    throw new RequestException(413, "Request body larger than " + maxBytes + " bytes");
+                }
+                body.write(chunk, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static void discardBody(HttpExchange exchange) throws IOException {
+        byte[] chunk = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            while (in.read(chunk) != -1) {
+                // Nothing kept
+            }
+        }
+    }
+
+    private static double[] readDoubles(byte[] body) {
+        if (body.length % 8 != 0) {
+            throw new IllegalArgumentException("Binary x values must be whole 8-byte doubles");
+        }
+        double[] values = new double[body.length / 8];
+        ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    private static double[] parseNumbers(String text) {
+        String stripped = text.strip();
+        if (stripped.isEmpty()) {
+            return new double[0];
+        }
+        String[] fields = stripped.split("[\\s,]+");
+        double[] values = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                values[i] = Double.parseDouble(fields[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid x value " + fields[i]);
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static double number(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + name + ": " + value);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static String argument(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,149 @@
+package calculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Parsed expressions by normalized text and angle mode, with their optimized and compiled forms built on first use.
+// Entries are evicted least recently used first. Safe to share between threads.
+public class ExpressionCache {
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private record Key(String text, boolean useRadians) {}
+
+    public static final class Entry {
+        private final Token tree;
+        private final boolean useRadians;
+        private final boolean twoVariable;
+        private Token optimized;
+        private TieredFunction function;
+        private TieredFunction fastFunction;
+
+        private Entry(Token tree, boolean useRadians) {
+            this.tree = tree;
+            this.useRadians = useRadians;
+            this.twoVariable = containsY(tree);
+        }
+
+        // The parse tree, to be evaluated in the entry's angle mode; shared, so it must not be modified
+        public Token getTree() { return tree; }
+
+        // ExpressionOptimizer's radian-mode tree. The same object is returned every time, so caches keyed by
+        // tree identity, like the sample tile cache, keep hitting when a cached expression is plotted again.
+        public synchronized Token getOptimized() {
+            if (optimized == null) {
+                optimized = ExpressionOptimizer.optimize(tree, useRadians);
+            }
+            return optimized;
+        }
+
+        // True if the expression uses Y, so it is a function of X and Y drawn as a field rather than a curve
+        public boolean isTwoVariable() { return twoVariable; }
+
+        // The optimized tree as a function of x, compiled to bytecode once it has been called often enough; with
+        // fastMath through the FastMath kernels. Shared, so it is compiled once however many times it is sampled.
+        public synchronized TieredFunction getFunction(boolean fastMath) {
+            if (fastMath) {
+                if (fastFunction == null) {
+                    fastFunction = new TieredFunction(getOptimized(), true, true);
+                }
+                return fastFunction;
+            }
+            if (function == null) {
+                function = new TieredFunction(getOptimized(), true);
+            }
+            return function;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    public ExpressionCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ExpressionCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) { // Access order, eldest is LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > ExpressionCache.this.maxEntries;
+            }
+        };
+    }
+
+    // The cached entry for text, parsing it with ExpressionReader on a miss. Syntax errors are thrown, not cached.
+    public Entry get(CharSequence text, boolean useRadians) {
+        Key key = new Key(normalize(text), useRadians);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry;
+            }
+            misses++;
+        }
+
+        // Parse the text as given, so error positions match it. Outside the lock; if another thread got there
+        // first, its entry is kept so everyone shares one tree.
+        Entry parsed = new Entry(ExpressionReader.parse(text), useRadians);
+        synchronized (this) {
+            Entry existing = entries.putIfAbsent(key, parsed);
+            return existing != null ? existing : parsed;
+        }
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // Spellings ExpressionReader reads the same way map to one key: whitespace is dropped except where it keeps
+    // two numbers or two names apart ("1 2" is 1×2, not 12) or a number from an e that isn't its exponent ("1 e-5"
+    // is 1×e-5, not 1e-5), and single-character aliases become the button symbols
+    static String normalize(CharSequence text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace && joins(normalized.charAt(normalized.length() - 1), c)) {
+                normalized.append(' ');
+            }
+            pendingSpace = false;
+            normalized.append(switch (c) {
+                case '*', '·' -> '×';
+                case '/' -> '÷';
+                case '−' -> '-';
+                case 'x' -> 'X'; // No other name contains an x or a y
+                case 'y' -> 'Y';
+                default -> c;
+            });
+        }
+        return normalized.toString();
+    }
+
+    private static boolean containsY(Token node) {
+        if (node == null) {
+            return false;
+        }
+        return Parser.isY(node) || containsY(node.getLeft()) || containsY(node.getRight()) || containsY(node.getArgument());
+    }
+
+    private static boolean joins(char before, char after) {
+        boolean numberBefore = Character.isDigit(before) || before == '.';
+        boolean numberAfter = Character.isDigit(after) || after == '.';
+        boolean exponentBefore = before == 'e' || before == 'E';
+        boolean exponentAfter = after == 'e' || after == 'E';
+        return (numberBefore && numberAfter) || (Character.isLetter(before) && Character.isLetter(after))
+            || (numberBefore && exponentAfter) || (exponentBefore && (numberAfter || after == '+' || after == '-' || after == '−'));
+    }
+}
@@ -0,0 +1,152 @@
+package calculator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hash-consed form of one or more parse trees: structurally identical subtrees become a single immutable node,
+// so a subexpression repeated anywhere in the trees is stored once and evaluated once per x
+public class ExpressionDag {
+    // Immutable node, equal to another node of the same DAG only if it is the same object. Nodes are numbered
+    // in evaluation order, so every node's operands have smaller ids than the node itself.
+    public static final class Node {
+        private final int id;
+        private final Token.TokenType type;
+        private final String value;
+        private final double constant;
+        private final Node left;
+        private final Node right;
+
+        private Node(int id, Token.TokenType type, String value, double constant, Node left, Node right) {
+            this.id = id;
+            this.type = type;
+            this.value = value;
+            this.constant = constant;
+            this.left = left;
+            this.right = right;
+        }
+
+        public int getId() { return id; }
+        public Token.TokenType getType() { return type; }
+        public String getValue() { return value; }
+        public double getConstant() { return constant; }
+        public Node getLeft() { return left; }
+        public Node getRight() { return right; }
+        public Node getArgument() { return left; }
+    }
+
+    // Constants are keyed by value so that e.g. "2" and "2.0" share a node
+    private record Key(Token.TokenType type, String value, long constantBits, int left, int right) {}
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Key, Node> interned = new HashMap<>();
+    private final Node[] roots;
+    private int treeNodeCount;
+
+    private ExpressionDag(List<Token> trees) {
+        roots = new Node[trees.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = intern(trees.get(i));
+        }
+    }
+
+    public static ExpressionDag of(Token tree) {
+        return new ExpressionDag(List.of(tree));
+    }
+
+    public static ExpressionDag of(List<Token> trees) {
+        return new ExpressionDag(trees);
+    }
+
+    public int size() { return roots.length; }
+    public Node getRoot(int index) { return roots[index]; }
+    public Node getNode(int id) { return nodes.get(id); }
+
+    // Distinct nodes, against the nodes of the trees the DAG was built from
+    public int getNodeCount() { return nodes.size(); }
+    public int getTreeNodeCount() { return treeNodeCount; }
+
+    // Number of operand references to each node, roots counted once more for the caller using their value
+    public int[] getUseCounts() {
+        int[] uses = new int[nodes.size()];
+        for (Node node : nodes) {
+            if (node.left != null) uses[node.left.id]++;
+            if (node.right != null) uses[node.right.id]++;
+        }
+        for (Node root : roots) {
+            uses[root.id]++;
+        }
+        return uses;
+    }
+
+    // Fills values[id] with every node's value at x, each node evaluated once from its operands' entries.
+    // values must hold getNodeCount() entries; root i's value is then values[getRoot(i).getId()], the same
+    // as Parser.evaluate on tree i. Callers keep values between calls, so evaluating allocates nothing.
+    public void evaluate(boolean useRadians, double x, double[] values) {
+        evaluate(useRadians, false, x, values);
+    }
+
+    // With fastMath, ^ and the functions come from FastMath instead of Math
+    public void evaluate(boolean useRadians, boolean fastMath, double x, double[] values) {
+        for (Node node : nodes) {
+            values[node.id] = switch (node.type) {
+                case CONSTANT -> node.constant;
+                case VARIABLE -> x;
+                case OPERATOR -> fastMath
+                    ? FastMath.applyOperator(node.value, values[node.left.id], values[node.right.id])
+                    : ExpressionOptimizer.applyOperator(node.value, values[node.left.id], values[node.right.id]);
+                case FUNCTION -> {
+                    double argument = useRadians ? values[node.left.id] : Math.toRadians(values[node.left.id]); // Convert degrees to radians
+                    yield fastMath ? FastMath.applyFunction(node.value, argument) : ExpressionOptimizer.applyFunction(node.value, argument);
+                }
+                default -> throw new IllegalStateException("Unexpected node type: " + node.type);
+            };
+        }
+    }
+
+    // Bottom-up: a node's key holds its operands' ids, so equal keys mean structurally equal subtrees
+    private Node intern(Token token) {
+        if (token == null) {
+            throw new IllegalArgumentException("Invalid syntax tree");
+        }
+        treeNodeCount++;
+
+        Node left = null;
+        Node right = null;
+        double constant = 0;
+        Key key;
+        switch (token.getType()) {
+            case CONSTANT -> {
+                constant = Parser.constantValue(token);
+                key = new Key(Token.TokenType.CONSTANT, null, Double.doubleToLongBits(constant), -1, -1);
+            }
+            case VARIABLE -> {
+                if (Parser.isY(token)) {
+                    throw Parser.yWithoutValue(); // Every evaluator built on the DAG is a function of X alone
+                }
+                key = new Key(Token.TokenType.VARIABLE, null, 0, -1, -1);
+            }
+            case OPERATOR -> {
+                ExpressionOptimizer.applyOperator(token.getValue(), 0, 0); // Rejects unknown operators up front
+                left = intern(token.getLeft());
+                right = intern(token.getRight());
+                key = new Key(Token.TokenType.OPERATOR, token.getValue(), 0, left.id, right.id);
+            }
+            case FUNCTION -> {
+                ExpressionOptimizer.applyFunction(token.getValue(), 0);
+                left = intern(token.getArgument());
+                key = new Key(Token.TokenType.FUNCTION, token.getValue(), 0, left.id, -1);
+            }
+            default -> throw new IllegalArgumentException("Unexpected token type: " + token.getType());
+        }
+
+        Node node = interned.get(key);
+        if (node == null) {
+            node = new Node(nodes.size(), token.getType(), token.getValue(), constant, left, right);
+            nodes.add(node);
+            interned.put(key, node);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,126 @@
+package calculator;
+
+public class ExpressionOptimizer {
+    private static final double DEGREES_TO_RADIANS = Math.toRadians(1.0);
+
+    // Folds subtrees that don't depend on X into constants and applies exact identities.
+    // The returned tree already contains the degree conversion, so always evaluate it in radians.
+    public static Token optimize(Token node, boolean useRadians) {
+        if (node == null) {
+            throw new IllegalArgumentException("Invalid syntax tree");
+        }
+
+        switch (node.getType()) {
+            case CONSTANT, VARIABLE -> {
+                return node;
+            }
+            case OPERATOR -> {
+                Token left = optimize(node.getLeft(), useRadians);
+                Token right = optimize(node.getRight(), useRadians);
+
+                if (isConstant(left) && isConstant(right)) {
+                    Token folded = foldedConstant(applyOperator(node.getValue(), Parser.constantValue(left), Parser.constantValue(right)));
+                    if (folded != null) {
+                        return folded;
+                    }
+                }
+
+                return simplifyOperator(node.getValue(), left, right);
+            }
+            case FUNCTION -> {
+                Token argument = optimize(node.getArgument(), useRadians);
+
+                if (isConstant(argument)) {
+                    double argumentValue = Parser.constantValue(argument);
+                    if (!useRadians) {
+                        argumentValue = Math.toRadians(argumentValue); // Convert degrees to radians
+                    }
+                    Token folded = foldedConstant(applyFunction(node.getValue(), argumentValue));
+                    if (folded != null) {
+                        return folded;
+                    }
+                }
+
+                if (!useRadians) {
+                    // Same product Math.toRadians computes, done by the tree so it can be evaluated in radians
+                    argument = new Token(Token.TokenType.OPERATOR, "×", argument, constant(DEGREES_TO_RADIANS));
+                }
+                Token functionToken = new Token(Token.TokenType.FUNCTION, node.getValue(), null, null);
+                functionToken.setArgument(argument);
+                return functionToken;
+            }
+            default -> throw new IllegalArgumentException("Unexpected token type: " + node.getType());
+        }
+    }
+
+    private static Token simplifyOperator(String operator, Token left, Token right) {
+        switch (operator) {
+            case "×" -> {
+                if (isConstantValue(right, 1.0)) return left;
+                if (isConstantValue(left, 1.0)) return right;
+            }
+            case "÷" -> {
+                if (isConstantValue(right, 1.0)) return left;
+            }
+            case "+" -> {
+                // No x+0 identity: -0.0 + 0 is 0.0, and constants are never -0.0
+            }
+            case "-" -> {
+                if (isConstantValue(right, 0.0)) return left; // Exact, -0.0 - 0 is still -0.0
+            }
+            case "^" -> {
+                if (isConstantValue(right, 1.0)) return left;
+                // Only for leaves, a larger base would be evaluated twice by the tree walkers
+                if (isConstantValue(right, 2.0) && left.getType() == Token.TokenType.VARIABLE) {
+                    return new Token(Token.TokenType.OPERATOR, "×", left, left);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+
+        return new Token(Token.TokenType.OPERATOR, operator, left, right);
+    }
+
+    static double applyOperator(String operator, double leftValue, double rightValue) {
+        return switch (operator) {
+            case "+" -> leftValue + rightValue;
+            case "-" -> leftValue - rightValue;
+            case "×" -> leftValue * rightValue;
+            case "÷" -> leftValue / rightValue;
+            case "^" -> Math.pow(leftValue, rightValue);
+            default -> throw new IllegalArgumentException("Unknown operator: " + operator);
+        };
+    }
+
+    static double applyFunction(String function, double argumentValue) {
+        return switch (function) {
+            case "sin" -> Math.sin(argumentValue);
+            case "cos" -> Math.cos(argumentValue);
+            case "tan" -> Math.tan(argumentValue);
+            case "log" -> Math.log10(argumentValue);
+            case "ln" -> Math.log(argumentValue);
+            case "√" -> Math.sqrt(argumentValue);
+            default -> throw new IllegalArgumentException("Unknown function: " + function);
+        };
+    }
+
+    private static boolean isConstant(Token node) {
+        return node.getType() == Token.TokenType.CONSTANT;
+    }
+
+    private static boolean isConstantValue(Token node, double value) {
+        return isConstant(node) && Parser.constantValue(node) == value;
+    }
+
+    // Constant leaves below 1e-10 (and -0.0) evaluate to zero, so such results can't be folded without changing them
+    private static Token foldedConstant(double value) {
+        if (Math.abs(value) < 1e-10 && Double.doubleToRawLongBits(value) != 0L) {
+            return null;
+        }
+        return constant(value);
+    }
+
+    private static Token constant(double value) {
+        return new Token(Token.TokenType.CONSTANT, Double.toString(value), null, null);
+    }
+}
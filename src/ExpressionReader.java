@@ -0,0 +1,255 @@
+package calculator;
+
+// Parses expression text straight into a parse tree in one pass, with the same grammar and tokens as
+// Parser.parseExpression. Also accepts what typed or pasted formulas tend to contain: whitespace, implicit
+// multiplication (2X, 3sin(X), (X+1)(X-1)), unary minus, scientific notation (1e-5, 2.5E3), and the ASCII
+// spellings * / pi sqrt x y.
+public class ExpressionReader {
+    // Names recognised at a letter, longest first so that e.g. "sqrt" isn't read as something shorter
+    private static final String[] NAMES = {"sqrt", "sin", "cos", "tan", "log", "ln", "pi", "e", "X", "x", "Y", "y"};
+
+    private final CharSequence text;
+    private final int end;
+    private int position;
+
+    private ExpressionReader(CharSequence text, int start, int end) {
+        this.text = text;
+        this.position = start;
+        this.end = end;
+    }
+
+    public static Token parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    // Parses text[start, end); error positions are offsets into text
+    public static Token parse(CharSequence text, int start, int end) {
+        Instrumentation.ParseEvent event = new Instrumentation.ParseEvent();
+        long counterStart = Instrumentation.counterStart();
+        event.begin();
+        Token tree = read(text, start, end);
+        Instrumentation.countParse(counterStart);
+        event.finish("ExpressionReader", end - start);
+        return tree;
+    }
+
+    private static Token read(CharSequence text, int start, int end) {
+        ExpressionReader reader = new ExpressionReader(text, start, end);
+        if (reader.peek() == 0) {
+            throw new ExpressionSyntaxException("Empty expression", reader.position);
+        }
+
+        Token tree = reader.parseExpression();
+        char next = reader.peek();
+        if (next == ')') {
+            throw new ExpressionSyntaxException("Unmatched ')'", reader.position);
+        }
+        if (next != 0) {
+            throw new ExpressionSyntaxException("Unexpected '" + next + "'", reader.position);
+        }
+        return tree;
+    }
+
+    private Token parseExpression() {
+        Token left = parseTerm();
+
+        while (true) {
+            char c = peek();
+            if (c == '+' || c == '-' || c == '−') {
+                position++; // Consume the operator
+                left = operator(c == '+' ? "+" : "-", left, parseTerm());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Token parseTerm() {
+        Token left = parseFactor();
+
+        while (true) {
+            char c = peek();
+            if (c == '×' || c == '*' || c == '·') {
+                position++;
+                left = operator("×", left, parseFactor());
+            } else if (c == '÷' || c == '/') {
+                position++;
+                left = operator("÷", left, parseFactor());
+            } else if (startsPrimary(c)) {
+                left = operator("×", left, parseFactor()); // Implicit multiplication, e.g. 2X or (X+1)(X-1)
+            } else {
+                return left;
+            }
+        }
+    }
+
+    // Right-associative like Parser: 2^3^2 is 2^(3^2). A leading minus binds looser than ^, so -X^2 is -(X^2).
+    private Token parseFactor() {
+        char c = peek();
+        if (c == '-' || c == '−') {
+            position++;
+            return operator("-", constant("0"), parseFactor());
+        }
+
+        Token base = parsePrimary();
+        if (peek() == '^') {
+            position++;
+            return operator("^", base, parseFactor());
+        }
+        return base;
+    }
+
+    private Token parsePrimary() {
+        char c = peek();
+        if (c == 0) {
+            throw new ExpressionSyntaxException("Unexpected end of expression", position);
+        }
+
+        if (isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (c == '(') {
+            position++; // Consume '('
+            Token expression = parseExpression();
+            expect(')', "Missing ')'");
+            return expression;
+        }
+        if (c == 'π') {
+            position++;
+            return constant("π");
+        }
+        if (c == '√') {
+            position++;
+            return parseFunction("√");
+        }
+        if (Character.isLetter(c)) {
+            String name = matchName();
+            if (name == null) {
+                int nameEnd = position;
+                while (nameEnd < end && Character.isLetter(text.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                throw new ExpressionSyntaxException("Unknown name '" + text.subSequence(position, nameEnd) + "'", position);
+            }
+            position += name.length();
+            return switch (name) {
+                case "e" -> constant("e");
+                case "pi" -> constant("π");
+                case "X", "x" -> new Token(Token.TokenType.VARIABLE, "X", null, null);
+                case "Y", "y" -> new Token(Token.TokenType.VARIABLE, "Y", null, null);
+                case "sqrt" -> parseFunction("√");
+                default -> parseFunction(name);
+            };
+        }
+        if (c == ')') {
+            throw new ExpressionSyntaxException("Expected a value before ')'", position);
+        }
+        throw new ExpressionSyntaxException("Unexpected '" + c + "'", position);
+    }
+
+    // Function arguments need parentheses, as with the buttons
+    private Token parseFunction(String name) {
+        if (peek() != '(') {
+            throw new ExpressionSyntaxException("Expected '(' after " + name, position);
+        }
+        position++; // Consume '('
+        Token argument = parseExpression();
+        expect(')', "Missing ')'");
+
+        Token function = new Token(Token.TokenType.FUNCTION, name, null, null);
+        function.setArgument(argument);
+        return function;
+    }
+
+    private Token parseNumber() {
+        int start = position;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        while (position < end) {
+            char c = text.charAt(position);
+            if (isDigit(c)) {
+                seenDigit = true;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (!seenDigit || (position < end && text.charAt(position) == '.')) {
+            throw new ExpressionSyntaxException("Malformed number", start);
+        }
+        // Scientific notation, 1e-5 or 2.5E3, rather than the constant e. Only with digits after it, so 2e and
+        // 2e-X stay 2×e and 2×e-X.
+        if (position < end && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            int digits = position + 1;
+            if (digits < end && (text.charAt(digits) == '+' || text.charAt(digits) == '-' || text.charAt(digits) == '−')) {
+                digits++;
+            }
+            if (digits < end && isDigit(text.charAt(digits))) {
+                StringBuilder number = new StringBuilder(text.subSequence(start, position)).append('e');
+                if (text.charAt(position + 1) == '-' || text.charAt(position + 1) == '−') {
+                    number.append('-');
+                }
+                position = digits;
+                while (position < end && isDigit(text.charAt(position))) {
+                    number.append(text.charAt(position++));
+                }
+                if (position < end && text.charAt(position) == '.') {
+                    throw new ExpressionSyntaxException("Malformed number", start);
+                }
+                return constant(number.toString());
+            }
+        }
+        return constant(text.subSequence(start, position).toString());
+    }
+
+    // The known name starting at position, without copying the text
+    private String matchName() {
+        for (String name : NAMES) {
+            int length = name.length();
+            if (position + length > end) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < length && matches; i++) {
+                matches = text.charAt(position + i) == name.charAt(i);
+            }
+            if (matches) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private void expect(char expected, String message) {
+        if (peek() != expected) {
+            throw new ExpressionSyntaxException(message, position);
+        }
+        position++;
+    }
+
+    // Next non-whitespace character, or 0 at the end; leaves position on it
+    private char peek() {
+        while (position < end && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position < end ? text.charAt(position) : 0;
+    }
+
+    private static boolean startsPrimary(char c) {
+        return isDigit(c) || c == '.' || c == '(' || c == 'π' || c == '√' || Character.isLetter(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static Token operator(String operator, Token left, Token right) {
+        return new Token(Token.TokenType.OPERATOR, operator, left, right);
+    }
+
+    private static Token constant(String value) {
+        return new Token(Token.TokenType.CONSTANT, value, null, null);
+    }
+}
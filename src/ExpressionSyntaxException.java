@@ -0,0 +1,16 @@
+package calculator;
+
+// Malformed expression text, with the offset of the character the parser stopped at
+public class ExpressionSyntaxException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+
+    public ExpressionSyntaxException(String message, int position) {
+        super(message + " at position " + (position + 1));
+        this.position = position;
+    }
+
+    // Zero-based offset into the parsed text
+    public int getPosition() { return position; }
+}
@@ -0,0 +1,197 @@
+package calculator;
+
+// Faster stand-ins for the Math functions the evaluators use, for plotting, where an error far below a pixel
+// doesn't matter but throughput does. Each kernel reduces its argument to a small range and evaluates a short
+// polynomial there, with a lookup table where that shortens the polynomial; arguments outside the ranges the
+// kernels are accurate over go to Math. The error bounds below were measured against StrictMath over tens of
+// millions of random arguments (see FastMathAccuracy in the bench module) and rounded up.
+public final class FastMath {
+    public static final double SIN_COS_MAX_ERROR = 1e-11; // Absolute
+    public static final double TAN_MAX_RELATIVE_ERROR = 2e-11;
+    public static final double LOG_MAX_ERROR = 1e-15;     // For ln and log, absolute below 1 and relative above
+    public static final double EXP_MAX_RELATIVE_ERROR = 1e-15;
+    public static final double POW_MAX_RELATIVE_ERROR = 3e-13; // At |y × ln x| = 700, proportionally less below
+
+    // ^ with an integer exponent up to this size is a chain of multiplications, squaring where it can
+    public static final int MAX_CHAIN_EXPONENT = 32;
+
+    // Cody-Waite reduction by π/2 in three parts, each short enough that k times it is exact for k < 2^20
+    private static final double REDUCTION_LIMIT = 1e6;
+    private static final double TWO_OVER_PI = 0.6366197723675814;
+    private static final double PI_OVER_2_HI = 1.57079632673412561417e+00;
+    private static final double PI_OVER_2_MID = 6.07710050630396597660e-11;
+    private static final double PI_OVER_2_LO = 2.02226624879595063154e-21;
+
+    // ln 2 in two parts, the first short enough that any exponent times it is exact
+    private static final double LN2_HI = 6.93147180369123816490e-01;
+    private static final double LN2_LO = 1.90821492927058770002e-10;
+    private static final double INV_LN10 = 0.4342944819032518;
+
+    // log: the top LOG_TABLE_BITS bits of the mantissa pick a point c near it, leaving ln(m ÷ c) for a polynomial
+    private static final int LOG_TABLE_BITS = 7;
+    private static final double[] LOG_INVERSE_CENTER = new double[1 << LOG_TABLE_BITS];
+    private static final double[] LOG_CENTER = new double[1 << LOG_TABLE_BITS];
+
+    // exp: e^t = 2^(k ÷ 64) × e^r with |r| ≤ ln 2 ÷ 128, the first factor from the table and the exponent bits
+    private static final int EXP_TABLE_BITS = 6;
+    private static final double[] EXP_TABLE = new double[1 << EXP_TABLE_BITS];
+    private static final double EXP_LIMIT = 700; // Beyond this the result is near overflow or underflow
+    private static final double SIXTY_FOUR_OVER_LN2 = 92.33248261689366;
+
+    static {
+        for (int j = 0; j < LOG_CENTER.length; j++) {
+            double center = 1 + (j + 0.5) / LOG_CENTER.length;
+            LOG_INVERSE_CENTER[j] = 1 / center;
+            LOG_CENTER[j] = -StrictMath.log(LOG_INVERSE_CENTER[j]); // Of the rounded inverse, the one actually used
+        }
+        for (int j = 0; j < EXP_TABLE.length; j++) {
+            EXP_TABLE[j] = StrictMath.pow(2, (double) j / EXP_TABLE.length);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    public static double sin(double x) {
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) {
+            return Math.sin(x); // Also NaN and infinities
+        }
+        int k = (int) Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, k);
+        return switch (k & 3) {
+            case 0 -> sinKernel(r);
+            case 1 -> cosKernel(r);
+            case 2 -> -sinKernel(r);
+            default -> -cosKernel(r);
+        };
+    }
+
+    public static double cos(double x) {
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) {
+            return Math.cos(x);
+        }
+        int k = (int) Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, k);
+        return switch (k & 3) {
+            case 0 -> cosKernel(r);
+            case 1 -> -sinKernel(r);
+            case 2 -> -cosKernel(r);
+            default -> sinKernel(r);
+        };
+    }
+
+    public static double tan(double x) {
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) {
+            return Math.tan(x);
+        }
+        int k = (int) Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, k);
+        return (k & 1) == 0 ? sinKernel(r) / cosKernel(r) : -cosKernel(r) / sinKernel(r);
+    }
+
+    public static double log(double x) {
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) {
+            return Math.log(x); // NaN, zero, negatives, infinity and subnormals
+        }
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52) - 1023;
+        int j = (int) (bits >>> (52 - LOG_TABLE_BITS)) & ((1 << LOG_TABLE_BITS) - 1);
+        double m = Double.longBitsToDouble(bits & 0x000FFFFFFFFFFFFFL | 0x3FF0000000000000L); // In [1, 2)
+        double r = m * LOG_INVERSE_CENTER[j] - 1; // |r| < 2^-8
+        double r2 = r * r;
+        double series = r - r2 * (0.5 - r * (1.0 / 3 - r * (0.25 - r * (0.2 - r * (1.0 / 6)))));
+        return (exponent * LN2_HI + LOG_CENTER[j]) + (exponent * LN2_LO + series);
+    }
+
+    public static double log10(double x) {
+        return log(x) * INV_LN10;
+    }
+
+    public static double exp(double x) {
+        if (!(Math.abs(x) <= EXP_LIMIT)) {
+            return Math.exp(x);
+        }
+        int k = (int) Math.rint(x * SIXTY_FOUR_OVER_LN2);
+        double r = (x - k * (LN2_HI / 64)) - k * (LN2_LO / 64); // Dividing by 64 is exact
+        double p = r + r * r * (0.5 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120))));
+        double scale = Double.longBitsToDouble((long) ((k >> EXP_TABLE_BITS) + 1023) << 52);
+        double t = EXP_TABLE[k & ((1 << EXP_TABLE_BITS) - 1)];
+        return (t + t * p) * scale;
+    }
+
+    public static double sqrt(double x) {
+        return Math.sqrt(x); // Already a single instruction
+    }
+
+    // Small integer exponents by multiplication, positive bases by exp and log, everything else by Math.pow,
+    // which also gives the special cases of zero, infinite and NaN arguments
+    public static double pow(double x, double y) {
+        int n = (int) y;
+        if (n == y && Math.abs(n) <= MAX_CHAIN_EXPONENT) {
+            if (n > 0) {
+                return multiplyChain(x, n);
+            }
+            if (n == 0) {
+                return 1;
+            }
+            double inverse = multiplyChain(x, -n);
+            if (Math.abs(inverse) >= Double.MIN_NORMAL || inverse == 0) {
+                return 1 / inverse;
+            }
+            // A subnormal power has lost bits its reciprocal would show
+        } else if (x > 0 && x < Double.POSITIVE_INFINITY) {
+            double t = y * log(x);
+            if (Math.abs(t) <= EXP_LIMIT) {
+                return exp(t);
+            }
+        }
+        return Math.pow(x, y);
+    }
+
+    // x^n for n ≥ 1 by squaring, in the order BytecodeCompiler emits it so compiled and interpreted agree
+    static double multiplyChain(double x, int n) {
+        if (n == 1) {
+            return x;
+        }
+        if ((n & 1) == 0) {
+            double half = multiplyChain(x, n >> 1);
+            return half * half;
+        }
+        return multiplyChain(x, n - 1) * x;
+    }
+
+    // Fast counterparts of ExpressionOptimizer.applyOperator and applyFunction
+    static double applyOperator(String operator, double leftValue, double rightValue) {
+        return operator.equals("^") ? pow(leftValue, rightValue) : ExpressionOptimizer.applyOperator(operator, leftValue, rightValue);
+    }
+
+    static double applyFunction(String function, double argumentValue) {
+        return switch (function) {
+            case "sin" -> sin(argumentValue);
+            case "cos" -> cos(argumentValue);
+            case "tan" -> tan(argumentValue);
+            case "log" -> log10(argumentValue);
+            case "ln" -> log(argumentValue);
+            case "√" -> sqrt(argumentValue);
+            default -> throw new IllegalArgumentException("Unknown function: " + function);
+        };
+    }
+
+    // x - k π/2, for |x| ≤ REDUCTION_LIMIT
+    private static double reduce(double x, int k) {
+        return ((x - k * PI_OVER_2_HI) - k * PI_OVER_2_MID) - k * PI_OVER_2_LO;
+    }
+
+    // Taylor polynomials on [-π/4, π/4], truncated where the next term drops below 1e-11
+    private static double sinKernel(double r) {
+        double r2 = r * r;
+        return r + r * r2 * (-1.0 / 6 + r2 * (1.0 / 120 + r2 * (-1.0 / 5040 + r2 * (1.0 / 362880
+            + r2 * (-1.0 / 39916800)))));
+    }
+
+    private static double cosKernel(double r) {
+        double r2 = r * r;
+        return 1 - r2 * (0.5 - r2 * (1.0 / 24 - r2 * (1.0 / 720 - r2 * (1.0 / 40320 - r2 * (1.0 / 3628800
+            - r2 * (1.0 / 479001600))))));
+    }
+}
@@ -0,0 +1,289 @@
+package calculator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Renders functions of X and Y over a viewport, either as a heatmap of the value or as the implicit curve where
+// the value is zero. The image is split into square tiles rendered in parallel on the pool, each tile writing
+// its own pixels straight into the image's int buffer. Implicit curves are found by quadtree refinement: a cell
+// that interval arithmetic proves free of zeros is dropped whole, and only cells that may hold part of the curve
+// are split down to blocks that are sampled at every pixel corner.
+public class FieldRenderer {
+    private static final int TILE_SIZE = 64;    // Pixels per side of a tile, one task each
+    private static final int BLOCK_SIZE = 8;    // Cells this small are sampled densely instead of split
+    private static final int POLE_BISECTIONS = 32; // Halvings of a pixel edge to tell a zero from a pole
+    private static final int TILES_PER_TASK = 4;
+    private static final double LOW_PERCENTILE = 0.02; // Heatmap colors span these percentiles of the values, so
+    private static final double HIGH_PERCENTILE = 0.98; // poles and outliers don't wash out the rest
+    private static final int HISTOGRAM_SAMPLES = 4096;
+    private static final int HEATMAP_ALPHA = 0xA0; // Lets the grid show through
+
+    // Viridis, from low to high
+    private static final int[] COLOR_STOPS = {0x440154, 0x3B528B, 0x21918C, 0x5EC962, 0xFDE725};
+    private static final int[] PALETTE = palette(256);
+
+    public enum Mode { HEATMAP, IMPLICIT }
+
+    private final ForkJoinPool pool;
+
+    public FieldRenderer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // A viewport-sized ARGB image of function, transparent wherever nothing is drawn. Implicit curves are drawn
+    // in color; heatmaps ignore it. function is evaluated in radians, like the optimized trees.
+    public BufferedImage render(Token function, Mode mode, int color, Viewport viewport) {
+        BufferedImage image = new BufferedImage(viewport.width(), viewport.height(), BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (mode == Mode.HEATMAP) {
+            renderHeatmap(function, viewport, pixels);
+        } else {
+            renderImplicit(function, viewport, pixels, 0xFF000000 | color);
+        }
+        return image;
+    }
+
+    // Values at the pixel centers, then colors scaled to the range most of them fall in
+    private void renderHeatmap(Token function, Viewport viewport, int[] pixels) {
+        int width = viewport.width();
+        int height = viewport.height();
+        double[] values = new double[width * height];
+        forEachTile(viewport, (x0, y0, x1, y1) -> {
+            int tileWidth = x1 - x0;
+            int count = tileWidth * (y1 - y0);
+            double[] xs = new double[count];
+            double[] ys = new double[count];
+            double[] tile = new double[count];
+            for (int py = y0, i = 0; py < y1; py++) {
+                double y = viewport.maxY() - (py + 0.5) * viewport.pixelHeight();
+                for (int px = x0; px < x1; px++, i++) {
+                    xs[i] = viewport.minX() + (px + 0.5) * viewport.pixelWidth();
+                    ys[i] = y;
+                }
+            }
+            evaluate(function, xs, ys, tile);
+            for (int py = y0; py < y1; py++) {
+                System.arraycopy(tile, (py - y0) * tileWidth, values, py * width + x0, tileWidth);
+            }
+        });
+
+        double[] range = percentiles(values);
+        double lo = range[0];
+        double scale = range[1] > lo ? (PALETTE.length - 1) / (range[1] - lo) : 0;
+        forEachTile(viewport, (x0, y0, x1, y1) -> {
+            for (int py = y0; py < y1; py++) {
+                for (int i = py * width + x0, end = py * width + x1; i < end; i++) {
+                    double value = values[i];
+                    if (Double.isFinite(value)) {
+                        int index = (int) Math.max(0, Math.min(PALETTE.length - 1, (value - lo) * scale));
+                        pixels[i] = HEATMAP_ALPHA << 24 | PALETTE[index];
+                    }
+                }
+            }
+        });
+    }
+
+    private void renderImplicit(Token function, Viewport viewport, int[] pixels, int argb) {
+        forEachTile(viewport, (x0, y0, x1, y1) -> refine(function, viewport, pixels, argb, x0, y0, TILE_SIZE, x1, y1));
+    }
+
+    // Cell of size × size pixels at (x0, y0), clipped to (x1, y1): dropped if f can't be zero in it, split while
+    // larger than a block, otherwise sampled at its pixel corners
+    private void refine(Token function, Viewport viewport, int[] pixels, int argb, int x0, int y0, int size, int x1, int y1) {
+        int right = Math.min(x0 + size, x1);
+        int bottom = Math.min(y0 + size, y1);
+        if (x0 >= right || y0 >= bottom) {
+            return;
+        }
+
+        Interval range;
+        try {
+            range = IntervalEvaluator.evaluate(function, true,
+                cornerX(viewport, x0), cornerX(viewport, right), cornerY(viewport, bottom), cornerY(viewport, y0));
+        } catch (RuntimeException e) {
+            range = Interval.ENTIRE; // Can't prove anything, look closer
+        }
+        if (range.isOutside(0, 0)) {
+            return;
+        }
+
+        if (size > BLOCK_SIZE) {
+            int half = size / 2;
+            refine(function, viewport, pixels, argb, x0, y0, half, x1, y1);
+            refine(function, viewport, pixels, argb, x0 + half, y0, half, x1, y1);
+            refine(function, viewport, pixels, argb, x0, y0 + half, half, x1, y1);
+            refine(function, viewport, pixels, argb, x0 + half, y0 + half, half, x1, y1);
+            return;
+        }
+
+        // A pixel is on the curve if f is zero at one of its corners or changes sign between them, unless the sign
+        // change is across a pole
+        int columns = right - x0 + 1;
+        int rows = bottom - y0 + 1;
+        double[] xs = new double[columns * rows];
+        double[] ys = new double[xs.length];
+        double[] corners = new double[xs.length];
+        for (int row = 0, i = 0; row < rows; row++) {
+            double y = cornerY(viewport, y0 + row);
+            for (int column = 0; column < columns; column++, i++) {
+                xs[i] = cornerX(viewport, x0 + column);
+                ys[i] = y;
+            }
+        }
+        evaluate(function, xs, ys, corners);
+        int width = viewport.width();
+        for (int row = 0; row < rows - 1; row++) {
+            for (int column = 0; column < columns - 1; column++) {
+                int i = row * columns + column;
+                if (crossesZero(corners[i], corners[i + 1], corners[i + columns], corners[i + columns + 1])
+                        && !signChangeIsPole(function, xs, ys, corners, i, columns)) {
+                    pixels[(y0 + row) * width + x0 + column] = argb;
+                }
+            }
+        }
+    }
+
+    // Bisects the first edge of the pixel at corner i whose ends have opposite signs, like Solver: towards a zero
+    // |f| shrinks below both ends, towards a pole, like that of 1÷(X-Y) along X=Y or those of tan(X×Y), it grows
+    private static boolean signChangeIsPole(Token function, double[] xs, double[] ys, double[] corners, int i, int columns) {
+        int[][] edges = {{i, i + 1}, {i + columns, i + columns + 1}, {i, i + columns}, {i + 1, i + columns + 1}};
+        for (int[] edge : edges) {
+            double fa = corners[edge[0]];
+            double fb = corners[edge[1]];
+            if ((fa < 0 && fb > 0) || (fa > 0 && fb < 0)) {
+                return isPole(function, xs[edge[0]], ys[edge[0]], fa, xs[edge[1]], ys[edge[1]], fb);
+            }
+        }
+        return false; // A corner is exactly zero
+    }
+
+    private static boolean isPole(Token function, double xa, double ya, double fa, double xb, double yb, double fb) {
+        double bound = Math.min(Math.abs(fa), Math.abs(fb));
+        try {
+            for (int iteration = 0; iteration < POLE_BISECTIONS; iteration++) {
+                double x = xa + (xb - xa) / 2;
+                double y = ya + (yb - ya) / 2;
+                double f = Parser.evaluate(function, true, x, y);
+                if (f == 0) {
+                    return false;
+                }
+                if (Double.isNaN(f)) {
+                    return true; // Undefined in between, no curve to draw
+                }
+                if ((f < 0) == (fa < 0)) {
+                    xa = x;
+                    ya = y;
+                    fa = f;
+                } else {
+                    xb = x;
+                    yb = y;
+                    fb = f;
+                }
+            }
+        } catch (RuntimeException e) {
+            return true;
+        }
+        return Math.min(Math.abs(fa), Math.abs(fb)) > 2 * bound;
+    }
+
+    private static boolean crossesZero(double a, double b, double c, double d) {
+        boolean negative = a < 0 || b < 0 || c < 0 || d < 0;
+        boolean positive = a > 0 || b > 0 || c > 0 || d > 0;
+        return (negative && positive) || a == 0 || b == 0 || c == 0 || d == 0;
+    }
+
+    private static void evaluate(Token function, double[] xs, double[] ys, double[] out) {
+        try {
+            Parser.evaluate(function, true, xs, ys, out, 0, xs.length);
+        } catch (RuntimeException e) {
+            Arrays.fill(out, Double.NaN); // Malformed tree, nothing to draw
+        }
+    }
+
+    private static double cornerX(Viewport viewport, int px) {
+        return viewport.minX() + px * viewport.pixelWidth();
+    }
+
+    private static double cornerY(Viewport viewport, int py) {
+        return viewport.maxY() - py * viewport.pixelHeight();
+    }
+
+    // The low and high percentiles of the finite values, estimated from an evenly strided subset
+    private static double[] percentiles(double[] values) {
+        int stride = Math.max(1, values.length / HISTOGRAM_SAMPLES);
+        double[] sample = new double[(values.length + stride - 1) / stride];
+        int count = 0;
+        for (int i = 0; i < values.length; i += stride) {
+            if (Double.isFinite(values[i])) {
+                sample[count++] = values[i];
+            }
+        }
+        if (count == 0) {
+            return new double[] {0, 0};
+        }
+        Arrays.sort(sample, 0, count);
+        return new double[] {sample[(int) (LOW_PERCENTILE * (count - 1))], sample[(int) (HIGH_PERCENTILE * (count - 1))]};
+    }
+
+    // COLOR_STOPS spread evenly over size entries, interpolated linearly in between
+    private static int[] palette(int size) {
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            double position = (double) i / (size - 1) * (COLOR_STOPS.length - 1);
+            int stop = Math.min((int) position, COLOR_STOPS.length - 2);
+            double t = position - stop;
+            int rgb = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int from = (COLOR_STOPS[stop] >> shift) & 0xFF;
+                int to = (COLOR_STOPS[stop + 1] >> shift) & 0xFF;
+                rgb |= (int) Math.round(from + (to - from) * t) << shift;
+            }
+            palette[i] = rgb;
+        }
+        return palette;
+    }
+
+    private interface TileRenderer {
+        void render(int x0, int y0, int x1, int y1);
+    }
+
+    private void forEachTile(Viewport viewport, TileRenderer renderer) {
+        int columns = (viewport.width() + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (viewport.height() + TILE_SIZE - 1) / TILE_SIZE;
+        pool.invoke(new TileTask(0, columns * rows, tile -> {
+            int x0 = tile % columns * TILE_SIZE;
+            int y0 = tile / columns * TILE_SIZE;
+            renderer.render(x0, y0, Math.min(x0 + TILE_SIZE, viewport.width()), Math.min(y0 + TILE_SIZE, viewport.height()));
+        }));
+    }
+
+    // Renders tiles [from, to), halving the range until a few tiles are left
+    @SuppressWarnings("serial") // Forked, never serialized
+    private static class TileTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer tile;
+
+        TileTask(int from, int to, IntConsumer tile) {
+            this.from = from;
+            this.to = to;
+            this.tile = tile;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(from, middle, tile), new TileTask(middle, to, tile));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                tile.accept(i);
+            }
+        }
+    }
+}
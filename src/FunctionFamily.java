@@ -0,0 +1,194 @@
+package calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Several functions of X evaluated together over one grid. The functions share one ExpressionDag, so a
+// subexpression common to several of them is evaluated once per x instead of once per function.
+public class FunctionFamily {
+    private static final int BLOCK_SIZE = 256; // x values evaluated per pass over the nodes, keeps every node buffer in cache
+
+    private final List<Token> functions;
+    private final List<TieredFunction> scalarFunctions;
+    private final boolean useRadians;
+    private final boolean fastMath;
+    private final ExpressionDag dag;
+    private final int[] all; // Every function index, in order
+    private final ThreadLocal<Workspace> workspaces;
+
+    // Per-thread node buffers, so evaluating a block allocates nothing; a buffer is only created for a node once a
+    // selection needs it, and a constant's buffer is filled then since its value is the same for every block
+    private static final class Workspace {
+        final boolean[] needed;
+        final double[][] buffers;
+
+        Workspace(int nodeCount) {
+            needed = new boolean[nodeCount];
+            buffers = new double[nodeCount][];
+        }
+    }
+
+    public FunctionFamily(List<Token> functions, boolean useRadians) {
+        this(functions, useRadians, false);
+    }
+
+    // With fastMath, ^ and the functions are evaluated by the FastMath kernels instead of Math
+    public FunctionFamily(List<Token> functions, boolean useRadians, boolean fastMath) {
+        this(functions, tieredFunctions(functions, useRadians, fastMath), useRadians, fastMath);
+    }
+
+    // scalarFunctions[f] evaluates functions[f] one x at a time in the same angle and math mode, e.g. the
+    // expression cache's, so a function compiled for an earlier family or view isn't compiled again
+    public FunctionFamily(List<Token> functions, List<TieredFunction> scalarFunctions, boolean useRadians, boolean fastMath) {
+        if (scalarFunctions.size() != functions.size()) {
+            throw new IllegalArgumentException("Expected one scalar function per function");
+        }
+        this.functions = List.copyOf(functions);
+        this.scalarFunctions = List.copyOf(scalarFunctions);
+        this.useRadians = useRadians;
+        this.fastMath = fastMath;
+        this.dag = ExpressionDag.of(this.functions);
+        this.all = new int[this.functions.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        int nodeCount = dag.getNodeCount();
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(nodeCount));
+    }
+
+    public int size() { return functions.size(); }
+    public Token get(int index) { return functions.get(index); }
+    public TieredFunction getFunction(int index) { return scalarFunctions.get(index); }
+    public List<Token> getFunctions() { return functions; }
+    public boolean isFastMath() { return fastMath; }
+
+    // Nodes actually evaluated per x, against the nodes the functions would take evaluated one by one
+    public int getNodeCount() { return dag.getNodeCount(); }
+    public int getTreeNodeCount() { return dag.getTreeNodeCount(); }
+
+    // out[f][offset + i] = function f at xs[offset + i], for every function in the family
+    public void evaluate(double[] xs, double[][] out, int offset, int length) {
+        evaluate(all, xs, out, offset, length);
+    }
+
+    // out[j][offset + i] = function selected[j] at xs[offset + i]; nodes only the other functions use are skipped
+    public void evaluate(int[] selected, double[] xs, double[][] out, int offset, int length) {
+        if (out.length < selected.length) {
+            throw new IllegalArgumentException("Fewer output arrays than selected functions");
+        }
+        Instrumentation.EvaluateEvent event = new Instrumentation.EvaluateEvent();
+        long counterStart = Instrumentation.counterStart();
+        event.begin();
+
+        int nodeCount = dag.getNodeCount();
+        Workspace workspace = workspaces.get();
+        boolean[] needed = workspace.needed;
+        double[][] buffers = workspace.buffers;
+        Arrays.fill(needed, false);
+        for (int function : selected) {
+            needed[dag.getRoot(function).getId()] = true;
+        }
+        for (int id = nodeCount - 1; id >= 0; id--) {
+            ExpressionDag.Node node = dag.getNode(id);
+            if (needed[id]) {
+                if (node.getLeft() != null) needed[node.getLeft().getId()] = true;
+                if (node.getRight() != null) needed[node.getRight().getId()] = true;
+            }
+        }
+
+        for (int id = 0; id < nodeCount; id++) {
+            if (needed[id] && buffers[id] == null) {
+                buffers[id] = new double[BLOCK_SIZE];
+                if (dag.getNode(id).getType() == Token.TokenType.CONSTANT) {
+                    Arrays.fill(buffers[id], dag.getNode(id).getConstant()); // Same for every block and call
+                }
+            }
+        }
+
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, length - start);
+            for (int id = 0; id < nodeCount; id++) {
+                if (needed[id] && dag.getNode(id).getType() != Token.TokenType.CONSTANT) {
+                    evaluateNode(dag.getNode(id), buffers, xs, offset + start, count);
+                }
+            }
+            for (int j = 0; j < selected.length; j++) {
+                System.arraycopy(buffers[dag.getRoot(selected[j]).getId()], 0, out[j], offset + start, count);
+            }
+        }
+        Instrumentation.countEvaluation(length * selected.length, counterStart);
+        event.finish("FunctionFamily", length * selected.length);
+    }
+
+    // Same operations in the same order as Parser.evaluate, so results are bit-identical; with fastMath, the same
+    // as ExpressionDag.evaluate and the compiled function in fast mode instead
+    private void evaluateNode(ExpressionDag.Node node, double[][] buffers, double[] xs, int xOffset, int count) {
+        double[] target = buffers[node.getId()];
+        switch (node.getType()) {
+            case VARIABLE -> System.arraycopy(xs, xOffset, target, 0, count);
+            case OPERATOR -> {
+                double[] left = buffers[node.getLeft().getId()];
+                double[] right = buffers[node.getRight().getId()];
+                switch (node.getValue()) {
+                    case "+" -> { for (int i = 0; i < count; i++) target[i] = left[i] + right[i]; }
+                    case "-" -> { for (int i = 0; i < count; i++) target[i] = left[i] - right[i]; }
+                    case "×" -> { for (int i = 0; i < count; i++) target[i] = left[i] * right[i]; }
+                    case "÷" -> { for (int i = 0; i < count; i++) target[i] = left[i] / right[i]; }
+                    case "^" -> {
+                        if (fastMath) {
+                            for (int i = 0; i < count; i++) target[i] = FastMath.pow(left[i], right[i]);
+                        } else {
+                            for (int i = 0; i < count; i++) target[i] = Math.pow(left[i], right[i]);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                }
+            }
+            case FUNCTION -> {
+                double[] argument = buffers[node.getArgument().getId()];
+                for (int i = 0; i < count; i++) {
+                    target[i] = useRadians ? argument[i] : Math.toRadians(argument[i]); // Convert degrees to radians
+                }
+                if (fastMath) {
+                    evaluateFastFunction(node.getValue(), target, count);
+                } else {
+                    evaluateFunction(node.getValue(), target, count);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected node type: " + node.getType());
+        }
+    }
+
+    private static void evaluateFunction(String function, double[] target, int count) {
+        switch (function) {
+            case "sin" -> { for (int i = 0; i < count; i++) target[i] = Math.sin(target[i]); }
+            case "cos" -> { for (int i = 0; i < count; i++) target[i] = Math.cos(target[i]); }
+            case "tan" -> { for (int i = 0; i < count; i++) target[i] = Math.tan(target[i]); }
+            case "log" -> { for (int i = 0; i < count; i++) target[i] = Math.log10(target[i]); }
+            case "ln" -> { for (int i = 0; i < count; i++) target[i] = Math.log(target[i]); }
+            case "√" -> { for (int i = 0; i < count; i++) target[i] = Math.sqrt(target[i]); }
+            default -> throw new IllegalArgumentException("Unknown function: " + function);
+        }
+    }
+
+    private static void evaluateFastFunction(String function, double[] target, int count) {
+        switch (function) {
+            case "sin" -> { for (int i = 0; i < count; i++) target[i] = FastMath.sin(target[i]); }
+            case "cos" -> { for (int i = 0; i < count; i++) target[i] = FastMath.cos(target[i]); }
+            case "tan" -> { for (int i = 0; i < count; i++) target[i] = FastMath.tan(target[i]); }
+            case "log" -> { for (int i = 0; i < count; i++) target[i] = FastMath.log10(target[i]); }
+            case "ln" -> { for (int i = 0; i < count; i++) target[i] = FastMath.log(target[i]); }
+            case "√" -> { for (int i = 0; i < count; i++) target[i] = FastMath.sqrt(target[i]); }
+            default -> throw new IllegalArgumentException("Unknown function: " + function);
+        }
+    }
+
+    private static List<TieredFunction> tieredFunctions(List<Token> functions, boolean useRadians, boolean fastMath) {
+        List<TieredFunction> tiered = new ArrayList<>();
+        for (Token function : functions) {
+            tiered.add(new TieredFunction(function, useRadians, fastMath));
+        }
+        return tiered;
+    }
+}
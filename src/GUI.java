@@ -1,17 +1,98 @@
 package calculator;
 
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import javax.swing.*;
 
 public class GUI {
     private boolean useRadians = true; // Default to radians
+    private boolean fastMath; // Plots through the FastMath kernels; the calculator itself always uses Math
     private final List<Token> tokenList = new ArrayList<>();
+    private JTextField standardDisplay;
+    private JTextField graphingDisplay;
 
     // Instance variables for graphing
     private JPanel graphPanel;
-    private Token currentFunction;
+    private final DefaultListModel<String> plots = new DefaultListModel<>(); // Expressions as entered
+    private final ExpressionCache expressionCache = new ExpressionCache();
+    private FunctionFamily plotFamily;
+    private List<String> plotFamilyExpressions = Collections.emptyList();
+    private boolean plotFamilyRadians;
+    private boolean plotFamilyFastMath;
+    private int[] plotFamilyPlots = new int[0]; // Plot list index of each function in plotFamily, for its color
+    private final ForkJoinPool samplingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final SamplingEngine samplingEngine = new SamplingEngine(samplingPool);
+    private final SampleTileCache tileCache = new SampleTileCache(samplingPool);
+    private final ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer(samplingEngine, tileCache, frame -> {
+        displayedFrame = frame;
+        graphPanel.repaint();
+    });
+    private ProgressiveRenderer.Frame displayedFrame;
+    private final RasterLayer gridLayer = new RasterLayer();
+    private final RasterLayer curveLayer = new RasterLayer();
+    private final PolylineRasterizer curveRasterizer = new PolylineRasterizer();
+    private final RasterLayer overlayLayer = new RasterLayer();
+    private SampleTable overlay; // Exported samples drawn under the plots, read from the mapped file
+    private final RasterLayer derivativeLayer = new RasterLayer();
+    private boolean showDerivatives;
+    private boolean showTangents;
+    private double tangentX = Double.NaN; // Graph x under the mouse, NaN when it is outside the graph
+    private List<DualEvaluator> derivatives = Collections.emptyList(); // For plotFamily, same order
+    private FunctionFamily derivativesFamily;
+    private final Solver solver = new Solver(samplingPool);
+    private List<Marker> markers = Collections.emptyList(); // Last solver results, marked on the graph
+    private final RasterLayer markerLayer = new RasterLayer();
+    private final Integrator integrator = new Integrator(samplingPool);
+    private Shading shading; // Area of the last integral, null if none
+    private final RasterLayer shadingLayer = new RasterLayer();
+    private final FieldRenderer fieldRenderer = new FieldRenderer(samplingPool);
+    private FieldFrame displayedFields; // Last finished field render, drawn until the current one is done
+    private FieldLayerKey requestedFields; // Latest fields asked for, rendered when the running render finishes
+    private boolean renderingFields;
+    private boolean showHeatmaps; // Two-variable plots as heatmaps instead of implicit curves
+    private boolean showHud;
+    private long lastFrameNanos;
+    private final Timer hudTimer = new Timer(500, e -> graphPanel.repaint()); // Keeps the counters current
+
+    // The curve layer depends on the pass being drawn and the viewport it is drawn in
+    private record CurveLayerKey(ProgressiveRenderer.Frame frame, Viewport viewport) {}
+    private record OverlayLayerKey(SampleTable table, Viewport viewport) {}
+    private record DerivativeLayerKey(FunctionFamily family, Viewport viewport) {}
+    private record MarkerLayerKey(List<Marker> markers, List<String> plots, Viewport viewport) {}
+
+    // A solver result for the plotted expression it was found on; for intersections the first of the two
+    private record Marker(String expression, String description, Solver.Feature feature) {}
+
+    // The area under a plotted expression between two x values, shaded under the curves
+    private record Shading(String expression, double from, double to) {}
+    private record ShadingLayerKey(Shading shading, List<String> plots, boolean useRadians, Viewport viewport) {}
+    private record FieldLayerKey(List<String> plots, boolean useRadians, boolean heatmaps, Viewport viewport) {}
+    private record FieldFrame(FieldLayerKey key, BufferedImage image) {}
+
+    // Curve colors, cycled through in plot list order
+    private static final Color[] PLOT_COLORS = {
+        Color.RED, Color.BLUE, new Color(0, 150, 0), Color.MAGENTA, Color.ORANGE,
+        Color.CYAN.darker(), Color.PINK.darker(), Color.DARK_GRAY, new Color(128, 0, 128), new Color(128, 128, 0)
+    };
 
     // User-specified graph bounds
     private double minX = -10;
@@ -19,6 +100,15 @@ public class GUI {
     private double minY = -10;
     private double maxY = 10;
 
+    // Pan and zoom state; while interacting the graph is drawn from cached tiles
+    private boolean interacting;
+    private Point dragStart;
+    private double dragMinX, dragMaxX, dragMinY, dragMaxY;
+    private final Timer interactionTimer = new Timer(200, e -> {
+        interacting = false; // Interaction paused, switch back to the adaptive sampler
+        graphPanel.repaint();
+    });
+
     public void createGUI() {
         JFrame mainWindow = new JFrame("Calculator");
         mainWindow.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -38,6 +128,17 @@ public class GUI {
         });
         settingsMenu.add(modeItem);
 
+        // Precision menu item, trading the last digits of plotted values for sampling speed
+        final JMenuItem precisionItem = new JMenuItem("Plot Precision: Strict");
+        precisionItem.addActionListener(e -> {
+            fastMath = !fastMath;
+            precisionItem.setText(fastMath ? "Plot Precision: Fast" : "Plot Precision: Strict");
+            if (graphPanel != null) {
+                graphPanel.repaint();
+            }
+        });
+        settingsMenu.add(precisionItem);
+
         // Add separator
         settingsMenu.addSeparator();
 
@@ -48,6 +149,53 @@ public class GUI {
         });
         settingsMenu.add(boundsItem);
 
+        // Derivative overlays, drawn dashed in each plot's color
+        settingsMenu.addSeparator();
+        JCheckBoxMenuItem derivativesItem = new JCheckBoxMenuItem("Show Derivatives");
+        derivativesItem.addActionListener(e -> {
+            showDerivatives = derivativesItem.isSelected();
+            if (graphPanel != null) {
+                graphPanel.repaint();
+            }
+        });
+        settingsMenu.add(derivativesItem);
+        JCheckBoxMenuItem tangentsItem = new JCheckBoxMenuItem("Show Tangent Lines");
+        tangentsItem.addActionListener(e -> {
+            showTangents = tangentsItem.isSelected();
+            if (graphPanel != null) {
+                graphPanel.repaint();
+            }
+        });
+        settingsMenu.add(tangentsItem);
+
+        // Expressions in X and Y are drawn as the curve where they are zero, or colored by value
+        settingsMenu.addSeparator();
+        JCheckBoxMenuItem heatmapsItem = new JCheckBoxMenuItem("Show Two-Variable Plots as Heatmaps");
+        heatmapsItem.addActionListener(e -> {
+            showHeatmaps = heatmapsItem.isSelected();
+            if (graphPanel != null) {
+                graphPanel.repaint();
+            }
+        });
+        settingsMenu.add(heatmapsItem);
+
+        // Frame time, evaluation and cache counters drawn over the graph
+        settingsMenu.addSeparator();
+        JCheckBoxMenuItem hudItem = new JCheckBoxMenuItem("Show Performance HUD");
+        hudItem.addActionListener(e -> {
+            showHud = hudItem.isSelected();
+            Instrumentation.setCountersEnabled(showHud);
+            if (showHud) {
+                hudTimer.start();
+            } else {
+                hudTimer.stop();
+            }
+            if (graphPanel != null) {
+                graphPanel.repaint();
+            }
+        });
+        settingsMenu.add(hudItem);
+
         // Add settings menu to menu bar
         menuBar.add(settingsMenu);
         mainWindow.setJMenuBar(menuBar);
@@ -65,6 +213,42 @@ public class GUI {
         tabbedPane.addTab("Standard Calculator", standardCalculatorPanel);
         tabbedPane.addTab("Graphing Calculator", graphingCalculatorPanel);
 
+        // Expressions menu: enter formulas as text instead of button by button, on whichever tab is showing
+        JMenu expressionsMenu = new JMenu("Expressions");
+        JMenuItem pasteItem = new JMenuItem("Paste");
+        pasteItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_V, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        pasteItem.addActionListener(e -> pasteExpressions(tabbedPane.getSelectedComponent() == graphingCalculatorPanel));
+        expressionsMenu.add(pasteItem);
+        JMenuItem loadItem = new JMenuItem("Load From File...");
+        loadItem.addActionListener(e -> loadExpressions(mainWindow, tabbedPane.getSelectedComponent() == graphingCalculatorPanel));
+        expressionsMenu.add(loadItem);
+        expressionsMenu.addSeparator();
+        JMenuItem exportItem = new JMenuItem("Export Samples...");
+        exportItem.addActionListener(e -> exportSamples(mainWindow));
+        expressionsMenu.add(exportItem);
+        JMenuItem overlayItem = new JMenuItem("Overlay Sample File...");
+        overlayItem.addActionListener(e -> openOverlay(mainWindow));
+        expressionsMenu.add(overlayItem);
+        JMenuItem removeOverlayItem = new JMenuItem("Remove Overlay");
+        removeOverlayItem.addActionListener(e -> setOverlay(null));
+        expressionsMenu.add(removeOverlayItem);
+        menuBar.add(expressionsMenu);
+
+        JMenu analyzeMenu = new JMenu("Analyze");
+        JMenuItem solveItem = new JMenuItem("Find Roots and Extrema...");
+        solveItem.addActionListener(e -> solve(mainWindow));
+        analyzeMenu.add(solveItem);
+        JMenuItem integrateItem = new JMenuItem("Integrate...");
+        integrateItem.addActionListener(e -> integrate(mainWindow));
+        analyzeMenu.add(integrateItem);
+        JMenuItem clearMarkersItem = new JMenuItem("Clear Markers and Shading");
+        clearMarkersItem.addActionListener(e -> {
+            shading = null;
+            setMarkers(Collections.emptyList());
+        });
+        analyzeMenu.add(clearMarkersItem);
+        menuBar.add(analyzeMenu);
+
         // Add the tabbed pane to the main window
         mainWindow.add(tabbedPane);
 
@@ -84,6 +268,11 @@ public class GUI {
         display.setFont(new Font("Arial", Font.PLAIN, 24));
         display.setPreferredSize(new Dimension(0, 50));
         mainPanel.add(display, BorderLayout.NORTH);
+        if (isGraphingCalculator) {
+            graphingDisplay = display;
+        } else {
+            standardDisplay = display;
+        }
 
         // Create the button panel
         JPanel buttonPanel = createButtonPanel(display, isGraphingCalculator);
@@ -101,8 +290,12 @@ public class GUI {
             };
             graphPanel.setPreferredSize(new Dimension(400, 400));
             graphPanel.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+            installPanAndZoom();
 
-            mainPanel.add(graphPanel, BorderLayout.EAST);
+            JPanel graphArea = new JPanel(new BorderLayout(5, 5));
+            graphArea.add(graphPanel, BorderLayout.CENTER);
+            graphArea.add(createPlotListPanel(), BorderLayout.SOUTH);
+            mainPanel.add(graphArea, BorderLayout.EAST);
         }
 
         return mainPanel;
@@ -115,7 +308,7 @@ public class GUI {
             {"1", "2", "3", "+", "e"},
             {".", "0", "=", "-", "π"},
             {"cos", "sin", "tan", "^", "√"},
-            {"✖", "⌫", "X", "Ans"} // clear, backspace, variable
+            {"✖", "⌫", "X", "Y", "Ans"} // clear, backspace, variables
         };
 
         JPanel buttonPanel = new JPanel(new GridBagLayout());
@@ -163,7 +356,8 @@ public class GUI {
                     tokenList.clear();
                     display.setText("");
                     if (isGraphingCalculator) {
-                        currentFunction = null;
+                        plots.clear();
+                        progressiveRenderer.cancel();
                         graphPanel.repaint();
                     }
                 }
@@ -177,21 +371,19 @@ public class GUI {
                 case "=" -> {
                     // Evaluate or plot
                     try {
-                        concatenateConstants();
-                        Token parseTree = Parser.parseExpression(tokenList, new IndexHolder(0));
+                        String expression = expressionText();
+                        ExpressionCache.Entry entry = expressionCache.get(expression, useRadians);
                         if (isGraphingCalculator) {
-                            plotFunction(parseTree);
+                            plotFunction(expression);
                         } else {
-                            double result = Parser.evaluate(parseTree, useRadians);
+                            double result = Parser.evaluate(entry.getTree(), useRadians);
                             display.setText(Double.toString(result));
                         }
                         tokenList.clear();
+                    } catch (ExpressionSyntaxException ex) {
+                        display.setText("Error: " + ex.getMessage());
                     } catch (Exception ex) {
-                        display.setText("Error");
-                        if (isGraphingCalculator) {
-                            currentFunction = null;
-                            graphPanel.repaint();
-                        }
+                        display.setText("Error"); // Plots already in the list stay
                     }
                 }
                 default -> {
@@ -208,7 +400,7 @@ public class GUI {
                             type = Token.TokenType.CONSTANT;
                             tokenValue = "π";
                         }
-                        case "X" -> type = Token.TokenType.VARIABLE;
+                        case "X", "Y" -> type = Token.TokenType.VARIABLE;
                         default -> type = Token.TokenType.CONSTANT;
                     }
                     tokenList.add(new Token(type, tokenValue, null, null));
@@ -219,48 +411,272 @@ public class GUI {
     }
 
     private void updateDisplay(JTextField display) {
-        StringBuilder displayText = new StringBuilder();
+        display.setText(expressionText());
+    }
+
+    // The buttons pressed so far, as text for ExpressionReader
+    // The e button is always the constant: right after a digit it gets an explicit ×, or 2, e, −, 5 would read as
+    // the number 2e-5
+    private String expressionText() {
+        StringBuilder text = new StringBuilder();
         for (Token token : tokenList) {
-            displayText.append(token.getValue());
+            int length = text.length();
+            if (token.getValue().equals("e") && length > 0 && (Character.isDigit(text.charAt(length - 1)) || text.charAt(length - 1) == '.')) {
+                text.append('×');
+            }
+            text.append(token.getValue());
         }
-        display.setText(displayText.toString());
+        return text.toString();
     }
 
-    private void concatenateConstants() {
-        List<Token> newTokenList = new ArrayList<>();
-        StringBuilder concatenatedValue = new StringBuilder();
-        for (Token token : tokenList) {
-            if (token.getType() == Token.TokenType.CONSTANT && !token.getValue().equals("e") && !token.getValue().equals("π")) {
-                concatenatedValue.append(token.getValue());
-            } else {
-                if (concatenatedValue.length() > 0) {
-                    newTokenList.add(new Token(Token.TokenType.CONSTANT, concatenatedValue.toString(), null, null));
-                    concatenatedValue.setLength(0);
+    private void pasteExpressions(boolean isGraphingCalculator) {
+        String text;
+        try {
+            text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "The clipboard does not contain text.", "Paste", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            enterExpressions(new BufferedReader(new StringReader(text)), isGraphingCalculator);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by StringReader
+        }
+    }
+
+    private void loadExpressions(Component parent, boolean isGraphingCalculator) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(chooser.getSelectedFile().toPath(), StandardCharsets.UTF_8)) {
+            enterExpressions(reader, isGraphingCalculator);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(parent, "Could not read " + chooser.getSelectedFile() + ": " + e.getMessage(), "Load Expressions", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // One expression per non-blank line: each is plotted on the graphing tab, or evaluated on the standard tab
+    // with the last result shown. Lines that don't parse are skipped and reported with their line number.
+    private void enterExpressions(BufferedReader reader, boolean isGraphingCalculator) throws IOException {
+        JTextField display = isGraphingCalculator ? graphingDisplay : standardDisplay;
+        List<String> errors = new ArrayList<>();
+        int lineNumber = 0;
+        int expressionCount = 0;
+        String lastError = null;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            expressionCount++;
+            try {
+                if (isGraphingCalculator) {
+                    plotFunction(line.strip());
+                } else {
+                    Token parseTree = expressionCache.get(line, useRadians).getTree();
+                    display.setText(Double.toString(Parser.evaluate(parseTree, useRadians)));
                 }
-                newTokenList.add(token);
+            } catch (ExpressionSyntaxException e) {
+                lastError = "Error: " + e.getMessage();
+                errors.add("Line " + lineNumber + ": " + e.getMessage());
+            } catch (Exception e) {
+                lastError = "Error";
+                errors.add("Line " + lineNumber + ": could not be evaluated");
             }
         }
-        if (concatenatedValue.length() > 0) {
-            newTokenList.add(new Token(Token.TokenType.CONSTANT, concatenatedValue.toString(), null, null));
-        }
         tokenList.clear();
-        tokenList.addAll(newTokenList);
+
+        if (expressionCount == 1 && lastError != null) {
+            display.setText(lastError); // A single expression reports like the = button
+        } else if (!errors.isEmpty()) {
+            int shown = Math.min(errors.size(), 20);
+            String message = String.join("\n", errors.subList(0, shown))
+                + (errors.size() > shown ? "\n... and " + (errors.size() - shown) + " more" : "");
+            JOptionPane.showMessageDialog(null, message, errors.size() + " of " + expressionCount + " expressions skipped", JOptionPane.WARNING_MESSAGE);
+        }
     }
 
-    private void plotFunction(Token parseTree) {
-        currentFunction = parseTree;
+    // Adds the expression to the plot list, rejecting ones that don't parse or that the optimizer can't handle
+    // before they reach the renderer
+    private void plotFunction(String expression) {
+        expressionCache.get(expression, useRadians).getOptimized();
+        plots.addElement(expression);
         graphPanel.repaint();
     }
 
+    private JPanel createPlotListPanel() {
+        JList<String> plotList = new JList<>(plots);
+        plotList.setVisibleRowCount(4);
+        plotList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                setForeground(PLOT_COLORS[index % PLOT_COLORS.length]); // Matches the curve
+                return this;
+            }
+        });
+
+        JButton removeButton = new JButton("Remove");
+        removeButton.addActionListener(e -> {
+            int[] selected = plotList.getSelectedIndices();
+            for (int i = selected.length - 1; i >= 0; i--) {
+                plots.remove(selected[i]);
+            }
+            graphPanel.repaint();
+        });
+
+        JPanel plotListPanel = new JPanel(new BorderLayout(5, 5));
+        plotListPanel.add(new JScrollPane(plotList), BorderLayout.CENTER);
+        plotListPanel.add(removeButton, BorderLayout.EAST);
+        return plotListPanel;
+    }
+
     private void drawFunction(Graphics g) {
-        if (currentFunction == null) return;
+        long frameStart = System.nanoTime();
+        Instrumentation.PaintPhaseEvent event = new Instrumentation.PaintPhaseEvent();
+        event.begin();
+        drawLayers(g);
+        event.finish("frame");
+        if (showHud) {
+            lastFrameNanos = System.nanoTime() - frameStart;
+            drawHud((Graphics2D) g);
+        }
+    }
 
-        Graphics2D g2d = (Graphics2D) g;
-        // Enable anti-aliasing for smoother lines
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    private void drawLayers(Graphics g) {
+        if (plots.isEmpty()) {
+            progressiveRenderer.cancel();
+            if (overlay == null) return;
+        }
 
         int width = graphPanel.getWidth();
         int height = graphPanel.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        // Grid, overlay and curves are cached images, so repaints that change nothing are just blits
+        Viewport viewport = new Viewport(minX, maxX, minY, maxY, width, height);
+        timed("grid", () -> g.drawImage(gridLayer.get(viewport, width, height, g2d -> drawGrid(g2d, viewport)), 0, 0, null));
+
+        SampleTable table = overlay;
+        if (table != null) {
+            timed("overlay", () -> g.drawImage(overlayLayer.get(new OverlayLayerKey(table, viewport), width, height,
+                g2d -> drawOverlay(g2d, table, viewport)), 0, 0, null));
+        }
+        if (!plots.isEmpty()) {
+            FieldLayerKey key = new FieldLayerKey(Collections.list(plots.elements()), useRadians, showHeatmaps, viewport);
+            requestFields(key);
+            FieldFrame fields = displayedFields;
+            if (fields != null && fields.key().plots().equals(key.plots()) && fields.key().useRadians() == key.useRadians()
+                    && fields.key().heatmaps() == key.heatmaps()) {
+                timed("fields", () -> drawFields(g, fields, viewport));
+            }
+        }
+        Shading shaded = shading;
+        if (shaded != null && !plots.isEmpty()) {
+            List<String> expressions = Collections.list(plots.elements());
+            boolean radians = useRadians;
+            timed("shading", () -> g.drawImage(shadingLayer.get(new ShadingLayerKey(shaded, expressions, radians, viewport), width, height,
+                g2d -> drawShading(g2d, shaded, expressions, radians, viewport)), 0, 0, null));
+        }
+        if (!plots.isEmpty()) {
+            drawPlots(g, viewport);
+        }
+    }
+
+    // Runs one phase of painting as a flight recorder event
+    private static void timed(String phase, Runnable paint) {
+        Instrumentation.PaintPhaseEvent event = new Instrumentation.PaintPhaseEvent();
+        event.begin();
+        paint.run();
+        event.finish(phase);
+    }
+
+    private void drawPlots(Graphics g, Viewport viewport) {
+        int width = viewport.width();
+        int height = viewport.height();
+        FunctionFamily family;
+        try {
+            family = plotFamily();
+        } catch (Exception e) {
+            return; // Malformed tree, nothing to plot
+        }
+        if (family.size() == 0) {
+            progressiveRenderer.cancel(); // Only two-variable plots, drawn as fields
+            return;
+        }
+
+        // Keep input responsive while panning or zooming by bounding the time spent refining each frame
+        progressiveRenderer.request(family, viewport, interacting ? ProgressiveRenderer.DEFAULT_FRAME_BUDGET_NANOS : 0);
+
+        // The latest pass is drawn in the current viewport even if it was sampled for a slightly different one
+        ProgressiveRenderer.Frame frame = displayedFrame;
+        if (frame == null || frame.family() != family) {
+            return; // Nothing sampled for these functions yet, the renderer repaints when it is
+        }
+        timed("curves", () -> g.drawImage(curveLayer.get(new CurveLayerKey(frame, viewport), width, height,
+            g2d -> drawCurve(g2d, frame, viewport)), 0, 0, null));
+
+        if (showDerivatives || (showTangents && !Double.isNaN(tangentX))) {
+            List<DualEvaluator> evaluators = derivatives(family);
+            if (showDerivatives) {
+                timed("derivatives", () -> g.drawImage(derivativeLayer.get(new DerivativeLayerKey(family, viewport), width, height,
+                    g2d -> drawDerivatives(g2d, evaluators, viewport)), 0, 0, null));
+            }
+            if (showTangents && !Double.isNaN(tangentX)) {
+                timed("tangents", () -> drawTangents((Graphics2D) g, evaluators, viewport, tangentX));
+            }
+        }
+
+        List<Marker> shown = markers;
+        if (!shown.isEmpty()) {
+            List<String> expressions = Collections.list(plots.elements());
+            timed("markers", () -> g.drawImage(markerLayer.get(new MarkerLayerKey(shown, expressions, viewport), width, height,
+                g2d -> drawMarkers(g2d, shown, expressions, viewport)), 0, 0, null));
+        }
+    }
+
+    // Frame time of this paint, and the counters since the HUD was turned on, in the top left corner
+    private void drawHud(Graphics2D g2d) {
+        long samples = Instrumentation.getEvaluatedSamples();
+        long parses = Instrumentation.getParses();
+        String[] lines = {
+            String.format("frame       %.2f ms", lastFrameNanos / 1e6),
+            String.format("samples     %,d", samples),
+            String.format("per sample  %.1f ns", samples == 0 ? 0 : (double) Instrumentation.getEvaluationNanos() / samples),
+            String.format("parses      %,d at %.1f µs", parses, parses == 0 ? 0 : Instrumentation.getParseNanos() / 1e3 / parses),
+            String.format("expr cache  %s hits", hitRate(expressionCache.getHits(), expressionCache.getMisses())),
+            String.format("tile cache  %s hits", hitRate(tileCache.getHits(), tileCache.getMisses()))
+        };
+
+        g2d.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        FontMetrics metrics = g2d.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int boxWidth = 0;
+        for (String line : lines) {
+            boxWidth = Math.max(boxWidth, metrics.stringWidth(line));
+        }
+        g2d.setColor(new Color(0, 0, 0, 160));
+        g2d.fillRect(4, 4, boxWidth + 12, lines.length * lineHeight + 8);
+        g2d.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g2d.drawString(lines[i], 10, 8 + metrics.getAscent() + i * lineHeight);
+        }
+    }
+
+    private static String hitRate(long hits, long misses) {
+        return hits + misses == 0 ? "-" : String.format("%.1f%%", 100.0 * hits / (hits + misses));
+    }
+
+    private void drawGrid(Graphics2D g2d, Viewport viewport) {
+        double minX = viewport.minX();
+        double maxX = viewport.maxX();
+        double minY = viewport.minY();
+        double maxY = viewport.maxY();
+        int width = viewport.width();
+        int height = viewport.height();
 
         // Calculate scaling factors based on user-specified bounds
         double scalingFactorX = width / (maxX - minX);
@@ -319,44 +735,648 @@ public class GUI {
             g2d.drawLine(zeroX - 5, y, zeroX + 5, y);
             g2d.drawString(String.format("%.1f", yValue), zeroX + 5, y + 5);
         }
+    }
 
-        // Plot the function with increased sampling rate
-        g2d.setColor(Color.RED);
+    private void drawCurve(Graphics2D g2d, ProgressiveRenderer.Frame frame, Viewport viewport) {
+        // Plot every function from the latest sampling pass
         g2d.setStroke(new BasicStroke(2));
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE); // Keep sub-pixel positions
+        SampleBuffer[] samples = frame.samples();
+        for (int i = 0; i < samples.length; i++) {
+            g2d.setColor(familyColor(i));
+            curveRasterizer.draw(g2d, samples[i], viewport, frame.uniform());
+        }
+    }
 
-        double xIncrement = (maxX - minX) / (width * 5); // 5 samples per pixel
-        double prevX = minX;
-        double prevY;
+    private void drawOverlay(Graphics2D g2d, SampleTable table, Viewport viewport) {
+        // Only the samples in view are read, thinned to a few per pixel
+        g2d.setColor(Color.BLACK);
+        g2d.setStroke(new BasicStroke(1));
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        curveRasterizer.draw(g2d, table.samples(viewport), viewport, true);
+    }
 
-        try {
-            prevY = Parser.evaluate(currentFunction, useRadians, prevX);
-        } catch (Exception e) {
-            prevY = Double.NaN;
+    private void drawDerivatives(Graphics2D g2d, List<DualEvaluator> evaluators, Viewport viewport) {
+        // One dual-number pass per function gives f' at every pixel column; f comes with it for free
+        int count = viewport.width() + 1;
+        double[] xs = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = viewport.minX() + i * viewport.pixelWidth();
+        }
+        double[] values = new double[count];
+        double[] slopes = new double[count];
+
+        g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, new float[] {6, 4}, 0));
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        SampleBuffer samples = new SampleBuffer(count);
+        for (int f = 0; f < evaluators.size(); f++) {
+            try {
+                evaluators.get(f).evaluate(xs, values, slopes, null, 0, count);
+            } catch (RuntimeException e) {
+                continue; // Malformed tree, nothing to draw
+            }
+            samples.clear();
+            for (int i = 0; i < count; i++) {
+                samples.add(xs[i], slopes[i]);
+            }
+            g2d.setColor(familyColor(f));
+            curveRasterizer.draw(g2d, samples, viewport, true);
+        }
+    }
+
+    // The tangent of every plot at the mouse x, with its slope next to the point of contact
+    private void drawTangents(Graphics2D g2d, List<DualEvaluator> evaluators, Viewport viewport, double x) {
+        double scalingFactorX = viewport.width() / (viewport.maxX() - viewport.minX());
+        double scalingFactorY = viewport.height() / (viewport.maxY() - viewport.minY());
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setStroke(new BasicStroke(1));
+        g2d.setFont(new Font("Arial", Font.PLAIN, 10));
+        for (int f = 0; f < evaluators.size(); f++) {
+            Dual point;
+            try {
+                point = evaluators.get(f).evaluate(x);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (!Double.isFinite(point.value()) || !Double.isFinite(point.slope())) {
+                continue; // Undefined or vertical here
+            }
+
+            double yAtMin = point.value() + point.slope() * (viewport.minX() - x);
+            double yAtMax = point.value() + point.slope() * (viewport.maxX() - x);
+            int px = (int) Math.round((x - viewport.minX()) * scalingFactorX);
+            double py = viewport.height() - (point.value() - viewport.minY()) * scalingFactorY;
+            g2d.setColor(familyColor(f));
+            g2d.draw(new Line2D.Double(
+                0, viewport.height() - (yAtMin - viewport.minY()) * scalingFactorY,
+                viewport.width(), viewport.height() - (yAtMax - viewport.minY()) * scalingFactorY));
+            if (py >= 0 && py <= viewport.height()) {
+                g2d.fillOval(px - 3, (int) Math.round(py) - 3, 7, 7);
+                g2d.drawString(String.format("slope %.4g", point.slope()), px + 6, (int) Math.round(py) - 6);
+            }
+        }
+    }
+
+    // Roots and intersections as circles, minima and maxima as triangles pointing down and up, in the color of
+    // the plot they were found on. Markers of expressions no longer plotted are skipped.
+    private void drawMarkers(Graphics2D g2d, List<Marker> shown, List<String> expressions, Viewport viewport) {
+        double scalingFactorX = viewport.width() / (viewport.maxX() - viewport.minX());
+        double scalingFactorY = viewport.height() / (viewport.maxY() - viewport.minY());
+        g2d.setStroke(new BasicStroke(1.5f));
+        for (Marker marker : shown) {
+            int plot = expressions.indexOf(marker.expression());
+            Solver.Feature feature = marker.feature();
+            if (plot < 0 || feature.x() < viewport.minX() || feature.x() > viewport.maxX()
+                    || feature.y() < viewport.minY() || feature.y() > viewport.maxY()) {
+                continue;
+            }
+            int x = (int) Math.round((feature.x() - viewport.minX()) * scalingFactorX);
+            int y = (int) Math.round(viewport.height() - (feature.y() - viewport.minY()) * scalingFactorY);
+            g2d.setColor(PLOT_COLORS[plot % PLOT_COLORS.length]);
+            switch (feature.kind()) {
+                case ROOT, INTERSECTION -> g2d.drawOval(x - 4, y - 4, 8, 8);
+                case MINIMUM -> g2d.drawPolygon(new int[] {x - 4, x + 4, x}, new int[] {y - 4, y - 4, y + 4}, 3);
+                case MAXIMUM -> g2d.drawPolygon(new int[] {x - 4, x + 4, x}, new int[] {y + 4, y + 4, y - 4}, 3);
+            }
         }
+    }
+
+    // Fields are rendered off the EDT, one render at a time; while one runs only the latest key asked for is
+    // kept, so panning and zooming skip the views there was no time for
+    private void requestFields(FieldLayerKey key) {
+        FieldFrame shown = displayedFields;
+        if (key.equals(requestedFields) || (shown != null && key.equals(shown.key()))) {
+            return;
+        }
+        requestedFields = key;
+        if (!renderingFields) {
+            renderFields(key);
+        }
+    }
 
-        for (double x = minX + xIncrement; x <= maxX; x += xIncrement) {
-            double y;
+    // Every two-variable plot, rendered in parallel tiles, in its plot color if drawn as an implicit curve
+    private void renderFields(FieldLayerKey key) {
+        List<Token> functions = new ArrayList<>();
+        List<Integer> colors = new ArrayList<>();
+        for (int i = 0; i < key.plots().size(); i++) {
             try {
-                y = Parser.evaluate(currentFunction, useRadians, x);
+                ExpressionCache.Entry entry = expressionCache.get(key.plots().get(i), key.useRadians());
+                if (entry.isTwoVariable()) {
+                    functions.add(entry.getOptimized()); // Optimized trees are in radians
+                    colors.add(PLOT_COLORS[i % PLOT_COLORS.length].getRGB());
+                }
             } catch (Exception e) {
-                y = Double.NaN;
+                // Malformed tree, nothing to draw
+            }
+        }
+        if (functions.isEmpty()) {
+            displayedFields = null;
+            return;
+        }
+
+        renderingFields = true;
+        Viewport viewport = key.viewport();
+        FieldRenderer.Mode mode = key.heatmaps() ? FieldRenderer.Mode.HEATMAP : FieldRenderer.Mode.IMPLICIT;
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() {
+                BufferedImage image = new BufferedImage(viewport.width(), viewport.height(), BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2d = image.createGraphics();
+                try {
+                    for (int i = 0; i < functions.size(); i++) {
+                        g2d.drawImage(fieldRenderer.render(functions.get(i), mode, colors.get(i), viewport), 0, 0, null);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+                return image;
             }
 
-            if (!Double.isNaN(prevY) && !Double.isNaN(y) && y >= minY && y <= maxY && prevY >= minY && prevY <= maxY) {
-                int pixelX1 = (int) ((prevX - minX) * scalingFactorX);
-                int pixelY1 = (int) (height - ((prevY - minY) * scalingFactorY));
+            @Override
+            protected void done() {
+                renderingFields = false;
+                try {
+                    displayedFields = new FieldFrame(key, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    displayedFields = null;
+                }
+                if (!key.equals(requestedFields)) {
+                    renderFields(requestedFields); // Asked for another view meanwhile
+                }
+                graphPanel.repaint();
+            }
+        }.execute();
+    }
+
+    // The last field render, moved and scaled from the viewport it was rendered for to the current one
+    private void drawFields(Graphics g, FieldFrame fields, Viewport viewport) {
+        Viewport rendered = fields.key().viewport();
+        int left = (int) Math.round((rendered.minX() - viewport.minX()) / viewport.pixelWidth());
+        int right = (int) Math.round((rendered.maxX() - viewport.minX()) / viewport.pixelWidth());
+        int top = (int) Math.round((viewport.maxY() - rendered.maxY()) / viewport.pixelHeight());
+        int bottom = (int) Math.round((viewport.maxY() - rendered.minY()) / viewport.pixelHeight());
+        g.drawImage(fields.image(), left, top, right, bottom, 0, 0, rendered.width(), rendered.height(), null);
+    }
+
+    // Fills between the curve and the X axis over the integrated range, one sample per pixel column, leaving
+    // gaps where the expression is undefined
+    private void drawShading(Graphics2D g2d, Shading shaded, List<String> expressions, boolean radians, Viewport viewport) {
+        int plot = expressions.indexOf(shaded.expression());
+        double from = Math.max(Math.min(shaded.from(), shaded.to()), viewport.minX());
+        double to = Math.min(Math.max(shaded.from(), shaded.to()), viewport.maxX());
+        if (plot < 0 || !(from < to)) {
+            return;
+        }
+
+        int count = (int) Math.ceil((to - from) / viewport.pixelWidth()) + 1;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = i == count - 1 ? to : from + i * viewport.pixelWidth();
+        }
+        try {
+            Parser.evaluate(expressionCache.get(shaded.expression(), radians).getOptimized(), true, xs, ys); // Optimized trees are in radians
+        } catch (RuntimeException e) {
+            return; // Malformed tree, nothing to shade
+        }
+
+        double scalingFactorX = viewport.width() / (viewport.maxX() - viewport.minX());
+        double scalingFactorY = viewport.height() / (viewport.maxY() - viewport.minY());
+        double zeroY = viewport.height() - (0 - viewport.minY()) * scalingFactorY;
+        Color color = PLOT_COLORS[plot % PLOT_COLORS.length];
+        g2d.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 64));
+        Path2D.Double area = new Path2D.Double();
+        int start = -1; // First sample of the current defined run
+        for (int i = 0; i <= count; i++) {
+            boolean defined = i < count && Double.isFinite(ys[i]);
+            if (defined && start < 0) {
+                start = i;
+                area.moveTo((xs[i] - viewport.minX()) * scalingFactorX, zeroY);
+            }
+            if (defined) {
+                // Clamp far off-screen values so the path stays within what Java2D rasterizes exactly
+                double y = viewport.height() - (ys[i] - viewport.minY()) * scalingFactorY;
+                area.lineTo((xs[i] - viewport.minX()) * scalingFactorX, Math.max(-viewport.height(), Math.min(2 * viewport.height(), y)));
+            } else if (start >= 0) {
+                area.lineTo((xs[i - 1] - viewport.minX()) * scalingFactorX, zeroY);
+                area.closePath();
+                start = -1;
+            }
+        }
+        g2d.fill(area);
+    }
 
-                int pixelX2 = (int) ((x - minX) * scalingFactorX);
-                int pixelY2 = (int) (height - ((y - minY) * scalingFactorY));
+    // Dual-number evaluators for the family's functions, rebuilt only when the family is
+    private List<DualEvaluator> derivatives(FunctionFamily family) {
+        if (derivativesFamily != family) {
+            List<DualEvaluator> evaluators = new ArrayList<>();
+            for (Token function : family.getFunctions()) {
+                evaluators.add(new DualEvaluator(function, true)); // Optimized trees are in radians
+            }
+            derivatives = evaluators;
+            derivativesFamily = family;
+        }
+        return derivatives;
+    }
 
-                if (Math.abs(pixelY1 - pixelY2) < height) {
-                    g2d.drawLine(pixelX1, pixelY1, pixelX2, pixelY2);
+    // Reuses the fused family across repaints until the plot list, angle mode or precision changes. The optimized
+    // trees come from the expression cache, so a family rebuilt with a previous plot keeps that plot's cached
+    // tiles. Two-variable plots are left out, they are drawn as fields.
+    private FunctionFamily plotFamily() {
+        List<String> expressions = Collections.list(plots.elements());
+        if (plotFamily == null || !plotFamilyExpressions.equals(expressions) || plotFamilyRadians != useRadians
+                || plotFamilyFastMath != fastMath) {
+            List<Token> optimized = new ArrayList<>();
+            List<TieredFunction> functions = new ArrayList<>();
+            int[] indices = new int[expressions.size()];
+            for (int i = 0; i < expressions.size(); i++) {
+                ExpressionCache.Entry entry = expressionCache.get(expressions.get(i), useRadians);
+                if (!entry.isTwoVariable()) {
+                    indices[optimized.size()] = i;
+                    optimized.add(entry.getOptimized());
+                    functions.add(entry.getFunction(fastMath));
                 }
             }
+            plotFamily = new FunctionFamily(optimized, functions, true, fastMath); // Optimized trees are always in radians
+            plotFamilyPlots = Arrays.copyOf(indices, optimized.size());
+            plotFamilyExpressions = expressions;
+            plotFamilyRadians = useRadians;
+            plotFamilyFastMath = fastMath;
+        }
+        return plotFamily;
+    }
+
+    // Color of the plot the family's function was built from
+    private Color familyColor(int function) {
+        int plot = function < plotFamilyPlots.length ? plotFamilyPlots[function] : function;
+        return PLOT_COLORS[plot % PLOT_COLORS.length];
+    }
+
+    // Plotted expressions of X alone, the ones that can be exported, solved and integrated
+    private List<String> curvePlots() {
+        List<String> curves = new ArrayList<>();
+        for (String expression : Collections.list(plots.elements())) {
+            if (!expressionCache.get(expression, useRadians).isTwoVariable()) {
+                curves.add(expression);
+            }
+        }
+        return curves;
+    }
+
+    private void installPanAndZoom() {
+        interactionTimer.setRepeats(false);
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getPoint();
+                dragMinX = minX;
+                dragMaxX = maxX;
+                dragMinY = minY;
+                dragMaxY = maxY;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart == null) return;
+                // Move the bounds with the mouse, measured from where the drag started
+                double dx = (e.getX() - dragStart.x) * (dragMaxX - dragMinX) / graphPanel.getWidth();
+                double dy = (e.getY() - dragStart.y) * (dragMaxY - dragMinY) / graphPanel.getHeight();
+                setBoundsInteractively(dragMinX - dx, dragMaxX - dx, dragMinY + dy, dragMaxY + dy);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragStart = null;
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                tangentX = minX + e.getX() * (maxX - minX) / graphPanel.getWidth();
+                if (showTangents) {
+                    graphPanel.repaint();
+                }
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                tangentX = Double.NaN;
+                if (showTangents) {
+                    graphPanel.repaint();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                // Zoom around the point under the mouse, wheel down zooms out
+                double factor = Math.pow(1.1, e.getPreciseWheelRotation());
+                double anchorX = minX + e.getX() * (maxX - minX) / graphPanel.getWidth();
+                double anchorY = maxY - e.getY() * (maxY - minY) / graphPanel.getHeight();
+                setBoundsInteractively(
+                    anchorX - (anchorX - minX) * factor, anchorX + (maxX - anchorX) * factor,
+                    anchorY - (anchorY - minY) * factor, anchorY + (maxY - anchorY) * factor);
+            }
+        };
+        graphPanel.addMouseListener(mouseHandler);
+        graphPanel.addMouseMotionListener(mouseHandler);
+        graphPanel.addMouseWheelListener(mouseHandler);
+    }
+
+    private void setBoundsInteractively(double newMinX, double newMaxX, double newMinY, double newMaxY) {
+        if (!(newMinX < newMaxX && newMinY < newMaxY) || Double.isInfinite(newMaxX - newMinX) || Double.isInfinite(newMaxY - newMinY)) {
+            return; // Zoomed in beyond double precision or out to infinity
+        }
+
+        minX = newMinX;
+        maxX = newMaxX;
+        minY = newMinY;
+        maxY = newMaxY;
+
+        interacting = true;
+        interactionTimer.restart();
+        graphPanel.repaint();
+    }
+
+    // Writes samples of one plotted expression to a sample table file in the background
+    private void exportSamples(Component parent) {
+        List<String> curves = curvePlots();
+        if (curves.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "Plot a function of X to export first.", "Export Samples", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JComboBox<String> expressionBox = new JComboBox<>(curves.toArray(new String[0]));
+        JTextField fromField = new JTextField(Double.toString(minX));
+        JTextField toField = new JTextField(Double.toString(maxX));
+        JTextField countField = new JTextField("1000000");
+
+        JPanel panel = new JPanel(new GridLayout(4, 2));
+        panel.add(new JLabel("Expression:"));
+        panel.add(expressionBox);
+        panel.add(new JLabel("From X:"));
+        panel.add(fromField);
+        panel.add(new JLabel("To X:"));
+        panel.add(toField);
+        panel.add(new JLabel("Samples:"));
+        panel.add(countField);
 
-            prevX = x;
-            prevY = y;
+        if (JOptionPane.showConfirmDialog(parent, panel, "Export Samples", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
         }
+        double from, to;
+        long count;
+        try {
+            from = Double.parseDouble(fromField.getText());
+            to = Double.parseDouble(toField.getText());
+            count = Long.parseLong(countField.getText().replace("_", "").replace(",", ""));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(parent, "Please enter valid numerical values.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        String expression = (String) expressionBox.getSelectedItem();
+        boolean radians = useRadians;
+        Token function = expressionCache.get(expression, radians).getOptimized();
+
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                long start = System.nanoTime();
+                SampleTable.write(file, expression, radians, function, from, to, count, samplingPool);
+                return System.nanoTime() - start;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(parent, String.format("Wrote %,d samples to %s in %.1f s.", count, file, get() / 1e9),
+                        "Export Samples", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(parent, "Export failed: " + cause.getMessage(), "Export Samples", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Finds the roots and extrema of one plotted expression, and optionally its intersections with another,
+    // across the visible x range in the background; the results are marked on the graph and listed in a table
+    private void solve(Component parent) {
+        List<String> curves = curvePlots();
+        if (curves.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "Plot a function of X to analyze first.", "Find Roots and Extrema", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        String[] expressions = curves.toArray(new String[0]);
+        JComboBox<String> expressionBox = new JComboBox<>(expressions);
+        String[] others = new String[expressions.length + 1];
+        others[0] = "(none)";
+        System.arraycopy(expressions, 0, others, 1, expressions.length);
+        JComboBox<String> intersectBox = new JComboBox<>(others);
+        JCheckBox rootsBox = new JCheckBox("Roots", true);
+        JCheckBox extremaBox = new JCheckBox("Minima and maxima", true);
+        JTextField toleranceField = new JTextField(Double.toString(Solver.DEFAULT_TOLERANCE));
+
+        JPanel panel = new JPanel(new GridLayout(5, 2));
+        panel.add(new JLabel("Expression:"));
+        panel.add(expressionBox);
+        panel.add(new JLabel("Intersect with:"));
+        panel.add(intersectBox);
+        panel.add(rootsBox);
+        panel.add(extremaBox);
+        panel.add(new JLabel("Tolerance in X:"));
+        panel.add(toleranceField);
+        panel.add(new JLabel("Range:"));
+        panel.add(new JLabel(String.format("%.4g to %.4g", minX, maxX)));
+
+        if (JOptionPane.showConfirmDialog(parent, panel, "Find Roots and Extrema", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        double tolerance;
+        try {
+            tolerance = Double.parseDouble(toleranceField.getText());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(parent, "Please enter valid numerical values.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        String expression = (String) expressionBox.getSelectedItem();
+        String other = intersectBox.getSelectedIndex() > 0 ? (String) intersectBox.getSelectedItem() : null;
+        boolean roots = rootsBox.isSelected();
+        boolean extrema = extremaBox.isSelected();
+        Token function = expressionCache.get(expression, useRadians).getOptimized(); // Optimized trees are in radians
+        Token otherFunction = other != null ? expressionCache.get(other, useRadians).getOptimized() : null;
+        double from = minX;
+        double to = maxX;
+
+        new SwingWorker<List<Marker>, Void>() {
+            @Override
+            protected List<Marker> doInBackground() {
+                List<Marker> found = new ArrayList<>();
+                if (roots) {
+                    for (Solver.Feature feature : solver.roots(function, true, from, to, tolerance)) {
+                        found.add(new Marker(expression, expression, feature));
+                    }
+                }
+                if (extrema) {
+                    for (Solver.Feature feature : solver.extrema(function, true, from, to, tolerance)) {
+                        found.add(new Marker(expression, expression, feature));
+                    }
+                }
+                if (otherFunction != null) {
+                    for (Solver.Feature feature : solver.intersections(function, otherFunction, true, from, to, tolerance)) {
+                        found.add(new Marker(expression, expression + " and " + other, feature));
+                    }
+                }
+                found.sort((a, b) -> Double.compare(a.feature().x(), b.feature().x()));
+                return found;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<Marker> found = get();
+                    setMarkers(found);
+                    showMarkerTable(parent, found);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(parent, "Analysis failed: " + cause.getMessage(), "Find Roots and Extrema", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Integrates one plotted expression between two bounds in the background, in the current angle mode, and
+    // shades the area on the graph
+    private void integrate(Component parent) {
+        List<String> curves = curvePlots();
+        if (curves.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "Plot a function of X to integrate first.", "Integrate", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JComboBox<String> expressionBox = new JComboBox<>(curves.toArray(new String[0]));
+        JTextField fromField = new JTextField(Double.toString(minX));
+        JTextField toField = new JTextField(Double.toString(maxX));
+        JTextField toleranceField = new JTextField(Double.toString(Integrator.DEFAULT_TOLERANCE));
+
+        JPanel panel = new JPanel(new GridLayout(4, 2));
+        panel.add(new JLabel("Expression:"));
+        panel.add(expressionBox);
+        panel.add(new JLabel("From X:"));
+        panel.add(fromField);
+        panel.add(new JLabel("To X:"));
+        panel.add(toField);
+        panel.add(new JLabel("Tolerance:"));
+        panel.add(toleranceField);
+
+        if (JOptionPane.showConfirmDialog(parent, panel, "Integrate", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        double from, to, tolerance;
+        try {
+            from = Double.parseDouble(fromField.getText());
+            to = Double.parseDouble(toField.getText());
+            tolerance = Double.parseDouble(toleranceField.getText());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(parent, "Please enter valid numerical values.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        String expression = (String) expressionBox.getSelectedItem();
+        boolean radians = useRadians;
+        Token tree = expressionCache.get(expression, radians).getTree();
+
+        new SwingWorker<Integrator.Result, Void>() {
+            private long elapsed;
+
+            @Override
+            protected Integrator.Result doInBackground() {
+                long start = System.nanoTime();
+                Integrator.Result result = integrator.integrate(tree, radians, from, to, tolerance);
+                elapsed = System.nanoTime() - start;
+                return result;
+            }
+
+            @Override
+            protected void done() {
+                Integrator.Result result;
+                try {
+                    result = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(parent, "Integration failed: " + cause.getMessage(), "Integrate", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                shading = new Shading(expression, from, to);
+                graphPanel.repaint();
+                String message = String.format("∫ %s dX from %s to %s%n= %.15g ± %.3g%n%,d evaluations over %,d intervals in %.1f ms",
+                    expression, from, to, result.value(), result.errorEstimate(), result.evaluations(), result.intervals(), elapsed / 1e6);
+                if (!result.converged()) {
+                    message += "\nThe tolerance was not reached; the integral may be divergent or undefined here.";
+                }
+                JOptionPane.showMessageDialog(parent, message, "Integrate",
+                    result.converged() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+            }
+        }.execute();
+    }
+
+    private void showMarkerTable(Component parent, List<Marker> found) {
+        String[] columns = {"Expression", "Kind", "X", "Y"};
+        Object[][] rows = new Object[found.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            Marker marker = found.get(i);
+            String kind = marker.feature().kind().name();
+            rows[i] = new Object[] {marker.description(), kind.charAt(0) + kind.substring(1).toLowerCase(), marker.feature().x(), marker.feature().y()};
+        }
+        JTable table = new JTable(rows, columns) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        table.setAutoCreateRowSorter(true);
+
+        JDialog dialog = new JDialog(JOptionPane.getFrameForComponent(parent), found.size() + " results", Dialog.ModalityType.MODELESS);
+        dialog.add(new JScrollPane(table));
+        dialog.setSize(500, 300);
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+    }
+
+    private void setMarkers(List<Marker> found) {
+        markers = List.copyOf(found);
+        graphPanel.repaint();
+    }
+
+    private void openOverlay(Component parent) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            setOverlay(SampleTable.open(chooser.getSelectedFile().toPath()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(parent, e.getMessage(), "Overlay Sample File", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void setOverlay(SampleTable table) {
+        if (overlay != null) {
+            try {
+                overlay.close();
+            } catch (IOException e) {
+                // Nothing left to do with the old file
+            }
+        }
+        overlay = table;
+        graphPanel.repaint();
     }
 
     private void setGraphBounds() {
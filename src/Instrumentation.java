@@ -0,0 +1,127 @@
+package calculator;
+
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Timing of the hot paths: parsing, evaluation batches and the phases of painting the graph. Each is a JDK Flight
+// Recorder event, recorded with e.g. java -XX:StartFlightRecording:filename=plot.jfr, and is also added to
+// counters the on-screen HUD reads. Both cost nothing measurable while off: an event that isn't being recorded
+// is a no-op the JIT removes along with its allocation, and the counters are a single volatile read until
+// setCountersEnabled turns them on.
+public final class Instrumentation {
+    private static volatile boolean countersEnabled;
+
+    private static final LongAdder parses = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder evaluatedSamples = new LongAdder();
+    private static final LongAdder evaluationNanos = new LongAdder();
+
+    private Instrumentation() {
+    }
+
+    @Name("calculator.Parse")
+    @Label("Parse")
+    @Category("Calculator")
+    @Description("Expression text or button tokens parsed into a tree")
+    @StackTrace(false)
+    public static final class ParseEvent extends Event {
+        @Label("Parser")
+        String parser;
+
+        @Label("Length")
+        @Description("Characters or tokens parsed")
+        int length;
+
+        void finish(String parser, int length) {
+            end();
+            if (shouldCommit()) {
+                this.parser = parser;
+                this.length = length;
+                commit();
+            }
+        }
+    }
+
+    @Name("calculator.Evaluate")
+    @Label("Evaluate")
+    @Category("Calculator")
+    @Description("One batch of samples evaluated")
+    @StackTrace(false)
+    @Threshold("10 us") // Solvers and integrators evaluate millions of tiny batches; lower it in the settings to see them
+    public static final class EvaluateEvent extends Event {
+        @Label("Evaluator")
+        String evaluator;
+
+        @Label("Samples")
+        int samples;
+
+        void finish(String evaluator, int samples) {
+            end();
+            if (shouldCommit()) {
+                this.evaluator = evaluator;
+                this.samples = samples;
+                commit();
+            }
+        }
+    }
+
+    @Name("calculator.PaintPhase")
+    @Label("Paint Phase")
+    @Category("Calculator")
+    @Description("One phase of painting the graph panel")
+    @StackTrace(false)
+    public static final class PaintPhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        public void finish(String phase) {
+            end();
+            if (shouldCommit()) {
+                this.phase = phase;
+                commit();
+            }
+        }
+    }
+
+    // Counting starts from zero every time it is turned on
+    public static void setCountersEnabled(boolean enabled) {
+        if (enabled && !countersEnabled) {
+            parses.reset();
+            parseNanos.reset();
+            evaluatedSamples.reset();
+            evaluationNanos.reset();
+        }
+        countersEnabled = enabled;
+    }
+
+    public static boolean isCountersEnabled() { return countersEnabled; }
+    public static long getParses() { return parses.sum(); }
+    public static long getParseNanos() { return parseNanos.sum(); }
+    public static long getEvaluatedSamples() { return evaluatedSamples.sum(); }
+    public static long getEvaluationNanos() { return evaluationNanos.sum(); }
+
+    // Start time to pass to countParse or countEvaluation, 0 while counting is off
+    static long counterStart() {
+        return countersEnabled ? System.nanoTime() : 0;
+    }
+
+    static void countParse(long start) {
+        if (start != 0) {
+            parses.increment();
+            parseNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    static void countEvaluation(int samples, long start) {
+        if (start != 0) {
+            evaluatedSamples.add(samples);
+            evaluationNanos.add(System.nanoTime() - start);
+        }
+    }
+}
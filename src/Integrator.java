@@ -0,0 +1,209 @@
+package calculator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Definite integrals by adaptive 15-point Gauss-Kronrod quadrature. The range is refined in rounds: while the
+// summed error estimate is above the tolerance, the intervals with the largest errors, as many as it takes to
+// bring the rest under the tolerance, are halved, and the halves of one round are integrated in parallel on
+// the pool. Smooth stretches are left alone and a singularity costs one halving per round. Every integrand
+// value comes from Parser.evaluate in the given angle mode, 15 nodes to a batch.
+public class Integrator {
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+    public static final long DEFAULT_MAX_EVALUATIONS = 10_000_000;
+
+    private static final int MAX_DEPTH = 60; // Halvings, enough to reach ulp-sized intervals from most ranges
+    private static final int LEAF_SEGMENTS = 8; // Segments halved by one task
+    private static final double EPSILON = Math.ulp(1.0);
+
+    // Kronrod nodes on [-1, 1], positive half, and their weights; every other node is also a 7-point Gauss node
+    private static final double[] KRONROD_NODES = {
+        0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+        0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+        0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+        0.207784955007898467600689403773245, 0.0
+    };
+    private static final double[] KRONROD_WEIGHTS = {
+        0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+        0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+        0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+        0.204432940075298892414161999234649, 0.209482141084727828012999174891714
+    };
+    private static final double[] GAUSS_WEIGHTS = { // For KRONROD_NODES[1], [3], [5] and [7]
+        0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+        0.381830050505118944950369775488975, 0.417959183673469387755102040816327
+    };
+
+    // value is within errorEstimate of the integral if converged; otherwise the evaluation budget or the
+    // resolution ran out first, usually at a singularity, and value is the best estimate there is
+    public record Result(double value, double errorEstimate, long evaluations, int intervals, boolean converged) {}
+
+    // One interval with the rule's estimate over it and the difference from the embedded Gauss estimate as its
+    // error. undefined if the function is undefined at every node, so the integral is too.
+    private record Segment(double a, double b, int depth, double value, double error, boolean undefined) {
+        boolean isSplittable() {
+            double middle = a + (b - a) / 2;
+            return depth < MAX_DEPTH && a < middle && middle < b;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public Integrator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Result integrate(Token function, boolean useRadians, double from, double to, double tolerance) {
+        return integrate(function, useRadians, from, to, tolerance, DEFAULT_MAX_EVALUATIONS);
+    }
+
+    // The integral of function from from to to, to within tolerance absolutely or relative to the value,
+    // whichever is looser. Reversed bounds give the negated integral, as usual.
+    public Result integrate(Token function, boolean useRadians, double from, double to, double tolerance, long maxEvaluations) {
+        if (!Double.isFinite(from) || !Double.isFinite(to) || !Double.isFinite(to - from) || !(tolerance > 0)) {
+            throw new IllegalArgumentException("Invalid bounds " + from + " to " + to + " with tolerance " + tolerance);
+        }
+        if (from == to) {
+            return new Result(0, 0, 0, 0, true);
+        }
+        if (from > to) {
+            Result reversed = integrate(function, useRadians, to, from, tolerance, maxEvaluations);
+            return new Result(-reversed.value(), reversed.errorEstimate(), reversed.evaluations(), reversed.intervals(), reversed.converged());
+        }
+
+        AtomicLong evaluations = new AtomicLong();
+        List<Segment> segments = List.of(segment(function, useRadians, from, to, 0, evaluations));
+        while (true) {
+            double value = 0;
+            double error = 0;
+            boolean undefined = false;
+            for (Segment segment : segments) {
+                value += segment.value();
+                error += segment.error();
+                undefined |= segment.undefined();
+            }
+            if (undefined) {
+                return new Result(Double.NaN, Double.NaN, evaluations.get(), segments.size(), false);
+            }
+            // Relative tolerance made absolute with the current estimate, while it has one
+            double budget = Double.isFinite(value) ? Math.max(tolerance, tolerance * Math.abs(value)) : tolerance;
+            if (error <= budget) {
+                return new Result(value, error, evaluations.get(), segments.size(), true);
+            }
+
+            // Split the largest errors first until what is left is within the budget
+            List<Segment> byError = new ArrayList<>(segments);
+            byError.sort((x, y) -> Double.compare(y.error(), x.error()));
+            List<Segment> kept = new ArrayList<>();
+            List<Segment> split = new ArrayList<>();
+            int infiniteErrors = 0;
+            double finiteError = 0;
+            for (Segment segment : byError) {
+                if (segment.error() == Double.POSITIVE_INFINITY) infiniteErrors++;
+                else finiteError += segment.error();
+            }
+            for (Segment segment : byError) {
+                if ((infiniteErrors > 0 || finiteError > budget) && segment.isSplittable()) {
+                    split.add(segment);
+                    if (segment.error() == Double.POSITIVE_INFINITY) infiniteErrors--;
+                    else finiteError -= segment.error();
+                } else {
+                    kept.add(segment);
+                }
+            }
+            if (split.isEmpty() || evaluations.get() + 30L * split.size() > maxEvaluations) {
+                // Out of evaluations or resolution, typically at a singularity
+                return new Result(value, error, evaluations.get(), segments.size(), false);
+            }
+
+            Segment[] halves = new Segment[2 * split.size()];
+            pool.invoke(new SplitTask(function, useRadians, split, halves, 0, split.size(), evaluations));
+            kept.addAll(List.of(halves));
+            segments = kept;
+        }
+    }
+
+    // 15-point Kronrod estimate over [a, b], with its difference from the 7-point Gauss estimate as the error
+    private static Segment segment(Token function, boolean useRadians, double a, double b, int depth, AtomicLong evaluations) {
+        double center = a + (b - a) / 2;
+        double halfWidth = (b - a) / 2;
+        double[] xs = new double[15];
+        double[] ys = new double[15];
+        for (int i = 0; i < 7; i++) {
+            xs[2 * i] = center - halfWidth * KRONROD_NODES[i];
+            xs[2 * i + 1] = center + halfWidth * KRONROD_NODES[i];
+        }
+        xs[14] = center;
+        Parser.evaluate(function, useRadians, xs, ys);
+        evaluations.addAndGet(15);
+
+        int undefinedNodes = 0;
+        int infiniteNodes = 0;
+        for (double y : ys) {
+            if (Double.isNaN(y)) undefinedNodes++;
+            else if (Double.isInfinite(y)) infiniteNodes++;
+        }
+        if (undefinedNodes == ys.length) {
+            return new Segment(a, b, depth, Double.NaN, 0, true);
+        }
+
+        double kronrod = KRONROD_WEIGHTS[7] * ys[14];
+        double gauss = GAUSS_WEIGHTS[3] * ys[14];
+        double absolute = Math.abs(kronrod);
+        for (int i = 0; i < 7; i++) {
+            double pair = ys[2 * i] + ys[2 * i + 1];
+            kronrod += KRONROD_WEIGHTS[i] * pair;
+            absolute += KRONROD_WEIGHTS[i] * (Math.abs(ys[2 * i]) + Math.abs(ys[2 * i + 1]));
+            if ((i & 1) == 1) {
+                gauss += GAUSS_WEIGHTS[i / 2] * pair;
+            }
+        }
+        // Below the rounding error of the sum itself no amount of subdivision helps. A node on a pole or a hole,
+        // like sin(X)÷X at 0, gives no estimate at all; halving moves the nodes off it.
+        double error = undefinedNodes + infiniteNodes > 0
+            ? Double.POSITIVE_INFINITY
+            : Math.max(Math.abs((kronrod - gauss) * halfWidth), 50 * EPSILON * absolute * halfWidth);
+        return new Segment(a, b, depth, kronrod * halfWidth, error, false);
+    }
+
+    // Halves segments[from, to) into halves[2 from, 2 to)
+    @SuppressWarnings("serial") // Forked, never serialized
+    private static class SplitTask extends RecursiveAction {
+        private final Token function;
+        private final boolean useRadians;
+        private final List<Segment> segments;
+        private final Segment[] halves;
+        private final int from;
+        private final int to;
+        private final AtomicLong evaluations;
+
+        SplitTask(Token function, boolean useRadians, List<Segment> segments, Segment[] halves, int from, int to, AtomicLong evaluations) {
+            this.function = function;
+            this.useRadians = useRadians;
+            this.segments = segments;
+            this.halves = halves;
+            this.from = from;
+            this.to = to;
+            this.evaluations = evaluations;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SEGMENTS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SplitTask(function, useRadians, segments, halves, from, middle, evaluations),
+                          new SplitTask(function, useRadians, segments, halves, middle, to, evaluations));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Segment segment = segments.get(i);
+                double middle = segment.a() + (segment.b() - segment.a()) / 2;
+                halves[2 * i] = segment(function, useRadians, segment.a(), middle, segment.depth() + 1, evaluations);
+                halves[2 * i + 1] = segment(function, useRadians, middle, segment.b(), segment.depth() + 1, evaluations);
+            }
+        }
+    }
+}
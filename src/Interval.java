@@ -0,0 +1,23 @@
+package calculator;
+
+// Closed range [lo, hi] guaranteed to contain every defined value; NaN bounds mean no defined value at all
+public record Interval(double lo, double hi) {
+    public static final Interval EMPTY = new Interval(Double.NaN, Double.NaN);
+    public static final Interval ENTIRE = new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    public static Interval point(double value) {
+        return Double.isNaN(value) ? EMPTY : new Interval(value, value);
+    }
+
+    public boolean isEmpty() { return Double.isNaN(lo); }
+    public double width() { return hi - lo; }
+
+    public boolean contains(double value) {
+        return value >= lo && value <= hi;
+    }
+
+    // True when no defined value can be inside [minY, maxY]
+    public boolean isOutside(double minY, double maxY) {
+        return isEmpty() || hi < minY || lo > maxY;
+    }
+}
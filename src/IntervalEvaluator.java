@@ -0,0 +1,213 @@
+package calculator;
+
+public class IntervalEvaluator {
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double HALF_PI = Math.PI / 2;
+    private static final double LARGEST_REDUCIBLE = 1e15; // Beyond this, one ulp is larger than a period
+
+    // Returns an enclosure of every defined value Parser.evaluate can produce for x in [xLo, xHi].
+    // Bounds are rounded outwards by an ulp after every operation, so the enclosure is never too tight.
+    public static Interval evaluate(Token node, boolean useRadians, double xLo, double xHi) {
+        return evaluate(node, useRadians, new Interval(xLo, xHi), null);
+    }
+
+    // Same for a function of X and Y over the box [xLo, xHi] × [yLo, yHi]
+    public static Interval evaluate(Token node, boolean useRadians, double xLo, double xHi, double yLo, double yHi) {
+        return evaluate(node, useRadians, new Interval(xLo, xHi), new Interval(yLo, yHi));
+    }
+
+    // y is null when the tree is a function of X alone
+    private static Interval evaluate(Token node, boolean useRadians, Interval x, Interval y) {
+        if (node == null) {
+            throw new IllegalArgumentException("Invalid syntax tree");
+        }
+
+        switch (node.getType()) {
+            case CONSTANT -> {
+                return Interval.point(Parser.constantValue(node));
+            }
+            case VARIABLE -> {
+                if (Parser.isY(node)) {
+                    if (y == null) throw Parser.yWithoutValue();
+                    return y;
+                }
+                return x;
+            }
+            case OPERATOR -> {
+                Interval left = evaluate(node.getLeft(), useRadians, x, y);
+                Interval right = evaluate(node.getRight(), useRadians, x, y);
+                if (node.getValue().equals("^") && right.lo() == 0 && right.hi() == 0) {
+                    return Interval.point(1); // pow(b, 0) is 1 for every b, NaN included
+                }
+                if (left.isEmpty() || right.isEmpty()) {
+                    return Interval.EMPTY;
+                }
+                return switch (node.getValue()) {
+                    case "+" -> outward(left.lo() + right.lo(), left.hi() + right.hi());
+                    case "-" -> outward(left.lo() - right.hi(), left.hi() - right.lo());
+                    case "×" -> multiply(left, right);
+                    case "÷" -> divide(left, right);
+                    case "^" -> power(left, right);
+                    default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                };
+            }
+            case FUNCTION -> {
+                Interval argument = evaluate(node.getArgument(), useRadians, x, y);
+                if (argument.isEmpty()) {
+                    return Interval.EMPTY;
+                }
+                if (!useRadians) {
+                    argument = outward(Math.toRadians(argument.lo()), Math.toRadians(argument.hi())); // Convert degrees to radians
+                }
+                return switch (node.getValue()) {
+                    case "sin" -> sinusoid(argument, false);
+                    case "cos" -> sinusoid(argument, true);
+                    case "tan" -> tan(argument);
+                    case "log" -> logarithm(argument, true);
+                    case "ln" -> logarithm(argument, false);
+                    case "√" -> squareRoot(argument);
+                    default -> throw new IllegalArgumentException("Unknown function: " + node.getValue());
+                };
+            }
+            default -> throw new IllegalArgumentException("Unexpected token type: " + node.getType());
+        }
+    }
+
+    private static Interval multiply(Interval a, Interval b) {
+        double p1 = product(a.lo(), b.lo());
+        double p2 = product(a.lo(), b.hi());
+        double p3 = product(a.hi(), b.lo());
+        double p4 = product(a.hi(), b.hi());
+        return outward(Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    // Zero times an unbounded end is zero, the end only stands for "arbitrarily large"
+    private static double product(double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    private static Interval divide(Interval a, Interval b) {
+        if (b.lo() > 0 || b.hi() < 0) {
+            return multiply(a, outward(1 / b.hi(), 1 / b.lo()));
+        }
+        if (b.lo() == 0 && b.hi() > 0) {
+            // Divisor in (0, hi], the quotient grows without bound on one side
+            if (a.lo() >= 0) return outward(a.lo() / b.hi(), Double.POSITIVE_INFINITY);
+            if (a.hi() <= 0) return outward(Double.NEGATIVE_INFINITY, a.hi() / b.hi());
+        } else if (b.hi() == 0 && b.lo() < 0) {
+            // Divisor in [lo, 0)
+            if (a.lo() >= 0) return outward(Double.NEGATIVE_INFINITY, a.lo() / b.lo());
+            if (a.hi() <= 0) return outward(a.hi() / b.lo(), Double.POSITIVE_INFINITY);
+        }
+        // Divisor straddles or equals zero: the hull of the two halves is everything
+        return Interval.ENTIRE;
+    }
+
+    private static Interval power(Interval base, Interval exponent) {
+        double n = exponent.lo();
+        if (n == exponent.hi() && n == Math.rint(n) && Math.abs(n) <= 1 << 30) {
+            return integerPower(base, (int) n);
+        }
+
+        if (base.hi() < 0) {
+            // Negative bases are only defined at integer exponents
+            return exponent.width() == 0 ? Interval.EMPTY : Interval.ENTIRE;
+        }
+        if (base.lo() < 0 && exponent.width() > 0) {
+            return Interval.ENTIRE;
+        }
+
+        // Non-negative base: pow is monotonic in each argument, so the extremes are at the corners
+        double lo = Math.max(base.lo(), 0);
+        double c1 = Math.pow(lo, exponent.lo());
+        double c2 = Math.pow(lo, exponent.hi());
+        double c3 = Math.pow(base.hi(), exponent.lo());
+        double c4 = Math.pow(base.hi(), exponent.hi());
+        if (Double.isNaN(c1) || Double.isNaN(c2) || Double.isNaN(c3) || Double.isNaN(c4)) {
+            return Interval.ENTIRE; // e.g. 1^∞, be conservative
+        }
+        return outward(Math.min(Math.min(c1, c2), Math.min(c3, c4)), Math.max(Math.max(c1, c2), Math.max(c3, c4)));
+    }
+
+    private static Interval integerPower(Interval base, int n) {
+        if (n == 0) {
+            return Interval.point(1.0); // Math.pow(x, 0) is 1 for every x
+        }
+        if (n < 0) {
+            return divide(Interval.point(1.0), integerPower(base, -n));
+        }
+
+        double powLo = Math.pow(base.lo(), n);
+        double powHi = Math.pow(base.hi(), n);
+        if ((n & 1) == 1) {
+            return outward(powLo, powHi); // Odd powers are increasing
+        }
+        if (base.lo() >= 0) {
+            return outward(powLo, powHi);
+        }
+        if (base.hi() <= 0) {
+            return outward(powHi, powLo);
+        }
+        return outward(0, Math.max(powLo, powHi)); // Even power of an interval around zero
+    }
+
+    // sin has its maxima at π/2 + 2kπ and minima at -π/2 + 2kπ, cos at 2kπ and π + 2kπ
+    private static Interval sinusoid(Interval x, boolean cosine) {
+        if (x.width() >= TWO_PI || Math.abs(x.lo()) > LARGEST_REDUCIBLE || Math.abs(x.hi()) > LARGEST_REDUCIBLE) {
+            return new Interval(-1, 1);
+        }
+
+        double valueLo = cosine ? Math.cos(x.lo()) : Math.sin(x.lo());
+        double valueHi = cosine ? Math.cos(x.hi()) : Math.sin(x.hi());
+        double lo = Math.min(valueLo, valueHi);
+        double hi = Math.max(valueLo, valueHi);
+        double maximumOffset = cosine ? 0 : HALF_PI;
+        if (containsPeriodicPoint(x, maximumOffset, TWO_PI)) {
+            hi = 1;
+        }
+        if (containsPeriodicPoint(x, maximumOffset + Math.PI, TWO_PI)) {
+            lo = -1;
+        }
+        return new Interval(Math.max(-1, Math.nextDown(lo)), Math.min(1, Math.nextUp(hi)));
+    }
+
+    private static Interval tan(Interval x) {
+        if (x.width() >= Math.PI || Math.abs(x.lo()) > LARGEST_REDUCIBLE || Math.abs(x.hi()) > LARGEST_REDUCIBLE
+                || containsPeriodicPoint(x, HALF_PI, Math.PI)) {
+            return Interval.ENTIRE; // Contains a pole
+        }
+        return outward(Math.tan(x.lo()), Math.tan(x.hi()));
+    }
+
+    private static Interval logarithm(Interval x, boolean base10) {
+        if (x.hi() < 0) {
+            return Interval.EMPTY;
+        }
+        double lo = Math.max(x.lo(), 0);
+        return base10
+            ? outward(Math.log10(lo), Math.log10(x.hi()))
+            : outward(Math.log(lo), Math.log(x.hi()));
+    }
+
+    private static Interval squareRoot(Interval x) {
+        if (x.hi() < 0) {
+            return Interval.EMPTY;
+        }
+        return outward(Math.sqrt(Math.max(x.lo(), 0)), Math.sqrt(x.hi()));
+    }
+
+    // True if offset + k × period lies in x for some integer k, erring towards true near the ends
+    private static boolean containsPeriodicPoint(Interval x, double offset, double period) {
+        double slack = 1e-9 * Math.max(1, Math.max(Math.abs(x.lo()), Math.abs(x.hi())));
+        double first = Math.ceil((x.lo() - slack - offset) / period);
+        double last = Math.floor((x.hi() + slack - offset) / period);
+        return first <= last;
+    }
+
+    // Widens by one ulp on each side; NaN bounds from ∞ - ∞ and similar become unbounded
+    private static Interval outward(double lo, double hi) {
+        return new Interval(
+            Double.isNaN(lo) ? Double.NEGATIVE_INFINITY : Math.nextDown(lo),
+            Double.isNaN(hi) ? Double.POSITIVE_INFINITY : Math.nextUp(hi));
+    }
+}
@@ -1,10 +1,25 @@
 package calculator;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 
 public class Parser {
+    // Scratch buffers for batch evaluation, kept per thread so repeated batches don't allocate
+    private static final ThreadLocal<ArrayDeque<double[]>> scratchBuffers = ThreadLocal.withInitial(ArrayDeque::new);
 
     public static Token parseExpression(List<Token> tokens, IndexHolder currentIndexHolder) {
+        Instrumentation.ParseEvent event = new Instrumentation.ParseEvent();
+        long start = Instrumentation.counterStart();
+        event.begin();
+        int first = currentIndexHolder.index;
+        Token tree = parseSum(tokens, currentIndexHolder);
+        Instrumentation.countParse(start);
+        event.finish("Parser", currentIndexHolder.index - first);
+        return tree;
+    }
+
+    private static Token parseSum(List<Token> tokens, IndexHolder currentIndexHolder) {
         Token left = parseTerm(tokens, currentIndexHolder);
 
         while (currentIndexHolder.index < tokens.size()) {
@@ -76,7 +91,7 @@ public class Parser {
 
                 if (currentIndexHolder.index < tokens.size() && tokens.get(currentIndexHolder.index).getValue().equals("(")) {
                     currentIndexHolder.index++; // Consume '('
-                    Token argumentToken = parseExpression(tokens, currentIndexHolder);
+                    Token argumentToken = parseSum(tokens, currentIndexHolder);
 
                     if (currentIndexHolder.index >= tokens.size() || !tokens.get(currentIndexHolder.index).getValue().equals(")")) {
                         throw new IllegalArgumentException("Missing closing parenthesis after function argument");
@@ -92,7 +107,7 @@ public class Parser {
             case PARENTHESIS -> {
                 if (currentToken.getValue().equals("(")) {
                     currentIndexHolder.index++; // Consume '('
-                    Token expressionToken = parseExpression(tokens, currentIndexHolder);
+                    Token expressionToken = parseSum(tokens, currentIndexHolder);
 
                     if (currentIndexHolder.index >= tokens.size() || !tokens.get(currentIndexHolder.index).getValue().equals(")")) {
                         throw new IllegalArgumentException("Missing closing parenthesis");
@@ -110,35 +125,44 @@ public class Parser {
 
     // Updated evaluate method
     public static double evaluate(Token node, boolean useRadians, double x) {
+        return evaluate(node, useRadians, x, 0, false);
+    }
+
+    // Value of a function of X and Y at (x, y)
+    public static double evaluate(Token node, boolean useRadians, double x, double y) {
+        return evaluate(node, useRadians, x, y, true);
+    }
+
+    // True for the Y variable token; VARIABLE otherwise stands for X
+    static boolean isY(Token node) {
+        return node.getType() == Token.TokenType.VARIABLE && "Y".equals(node.getValue());
+    }
+
+    // Thrown where Y appears in a tree evaluated as a function of X alone
+    static IllegalArgumentException yWithoutValue() {
+        return new IllegalArgumentException("Y is only defined in two-variable plots");
+    }
+
+    private static double evaluate(Token node, boolean useRadians, double x, double y, boolean hasY) {
         if (node == null) {
             throw new IllegalArgumentException("Invalid syntax tree");
         }
 
         switch (node.getType()) {
             case CONSTANT -> {
-                switch (node.getValue()) {
-                    case "e" -> {
-                        return Math.E;
-                    }
-                    case "π" -> {
-                        return Math.PI;
-                    }
-                    default -> {
-                        double value = Double.parseDouble(node.getValue());
-                        if (Math.abs(value) < 1e-10) {
-                            return 0.0; // Handle small floating-point inaccuracies
-                        }
-                        return value;
-                    }
-                }
+                return constantValue(node);
             }
             case VARIABLE -> {
                 // Return the value of x for variable tokens
+                if (isY(node)) {
+                    if (!hasY) throw yWithoutValue();
+                    return y;
+                }
                 return x;
             }
             case OPERATOR -> {
-                double leftValue = evaluate(node.getLeft(), useRadians, x);
-                double rightValue = evaluate(node.getRight(), useRadians, x);
+                double leftValue = evaluate(node.getLeft(), useRadians, x, y, hasY);
+                double rightValue = evaluate(node.getRight(), useRadians, x, y, hasY);
                 return switch (node.getValue()) {
                     case "+" -> leftValue + rightValue;
                     case "-" -> leftValue - rightValue;
@@ -149,7 +173,7 @@ public class Parser {
                 };
             }
             case FUNCTION -> {
-                double argumentValue = evaluate(node.getArgument(), useRadians, x);
+                double argumentValue = evaluate(node.getArgument(), useRadians, x, y, hasY);
                 if (!useRadians) {
                     argumentValue = Math.toRadians(argumentValue); // Convert degrees to radians
                 }
@@ -169,8 +193,128 @@ public class Parser {
         }
     }
 
+    // Numeric value of a CONSTANT token, shared by every evaluator
+    static double constantValue(Token node) {
+        switch (node.getValue()) {
+            case "e" -> {
+                return Math.E;
+            }
+            case "π" -> {
+                return Math.PI;
+            }
+            default -> {
+                double value = Double.parseDouble(node.getValue());
+                if (Math.abs(value) < 1e-10) {
+                    return 0.0; // Handle small floating-point inaccuracies
+                }
+                return value;
+            }
+        }
+    }
+
     // Overloaded evaluate method for standard calculations (without x)
     public static double evaluate(Token node, boolean useRadians) {
         return evaluate(node, useRadians, 0); // x is not used in standard calculations
     }
+
+    // Batch evaluate method: out[i] = f(xs[i]), one tight loop per node instead of one tree walk per x
+    public static void evaluate(Token node, boolean useRadians, double[] xs, double[] out) {
+        if (out.length < xs.length) {
+            throw new IllegalArgumentException("Output array is shorter than the input array");
+        }
+        evaluate(node, useRadians, xs, out, 0, xs.length);
+    }
+
+    // Evaluates xs[offset .. offset + length) into the same range of out
+    public static void evaluate(Token node, boolean useRadians, double[] xs, double[] out, int offset, int length) {
+        evaluate(node, useRadians, xs, null, out, offset, length);
+    }
+
+    // Evaluates a function of X and Y at the points (xs[i], ys[i]) for i in [offset, offset + length)
+    public static void evaluate(Token node, boolean useRadians, double[] xs, double[] ys, double[] out, int offset, int length) {
+        Instrumentation.EvaluateEvent event = new Instrumentation.EvaluateEvent();
+        long start = Instrumentation.counterStart();
+        event.begin();
+        evaluateBatch(node, useRadians, xs, ys, offset, out, offset, length);
+        Instrumentation.countEvaluation(length, start);
+        event.finish("Parser", length);
+    }
+
+    // ys is null when the tree is a function of X alone
+    private static void evaluateBatch(Token node, boolean useRadians, double[] xs, double[] ys, int xOffset, double[] target, int targetOffset, int length) {
+        if (node == null) {
+            throw new IllegalArgumentException("Invalid syntax tree");
+        }
+
+        switch (node.getType()) {
+            case CONSTANT -> Arrays.fill(target, targetOffset, targetOffset + length, constantValue(node));
+            case VARIABLE -> {
+                if (isY(node) && ys == null) {
+                    throw yWithoutValue();
+                }
+                System.arraycopy(isY(node) ? ys : xs, xOffset, target, targetOffset, length);
+            }
+            case OPERATOR -> {
+                evaluateBatch(node.getLeft(), useRadians, xs, ys, xOffset, target, targetOffset, length);
+
+                if (node.getRight() != null && node.getRight().getType() == Token.TokenType.CONSTANT) {
+                    // Constant right operand, no need for a scratch buffer
+                    double rightValue = constantValue(node.getRight());
+                    switch (node.getValue()) {
+                        case "+" -> { for (int i = 0; i < length; i++) target[targetOffset + i] += rightValue; }
+                        case "-" -> { for (int i = 0; i < length; i++) target[targetOffset + i] -= rightValue; }
+                        case "×" -> { for (int i = 0; i < length; i++) target[targetOffset + i] *= rightValue; }
+                        case "÷" -> { for (int i = 0; i < length; i++) target[targetOffset + i] /= rightValue; }
+                        case "^" -> { for (int i = 0; i < length; i++) target[targetOffset + i] = Math.pow(target[targetOffset + i], rightValue); }
+                        default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                    }
+                    return;
+                }
+
+                double[] right = acquireScratch(length);
+                try {
+                    evaluateBatch(node.getRight(), useRadians, xs, ys, xOffset, right, 0, length);
+                    switch (node.getValue()) {
+                        case "+" -> { for (int i = 0; i < length; i++) target[targetOffset + i] += right[i]; }
+                        case "-" -> { for (int i = 0; i < length; i++) target[targetOffset + i] -= right[i]; }
+                        case "×" -> { for (int i = 0; i < length; i++) target[targetOffset + i] *= right[i]; }
+                        case "÷" -> { for (int i = 0; i < length; i++) target[targetOffset + i] /= right[i]; }
+                        case "^" -> { for (int i = 0; i < length; i++) target[targetOffset + i] = Math.pow(target[targetOffset + i], right[i]); }
+                        default -> throw new IllegalArgumentException("Unknown operator: " + node.getValue());
+                    }
+                } finally {
+                    releaseScratch(right);
+                }
+            }
+            case FUNCTION -> {
+                evaluateBatch(node.getArgument(), useRadians, xs, ys, xOffset, target, targetOffset, length);
+                int end = targetOffset + length;
+                if (!useRadians) {
+                    for (int i = targetOffset; i < end; i++) target[i] = Math.toRadians(target[i]); // Convert degrees to radians
+                }
+                switch (node.getValue()) {
+                    case "sin" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.sin(target[i]); }
+                    case "cos" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.cos(target[i]); }
+                    case "tan" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.tan(target[i]); }
+                    case "log" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.log10(target[i]); }
+                    case "ln" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.log(target[i]); }
+                    case "√" -> { for (int i = targetOffset; i < end; i++) target[i] = Math.sqrt(target[i]); }
+                    default -> throw new IllegalArgumentException("Unknown function: " + node.getValue());
+                }
+            }
+            default -> throw new IllegalArgumentException("Unexpected token type: " + node.getType());
+        }
+    }
+
+    private static double[] acquireScratch(int length) {
+        double[] buffer = scratchBuffers.get().poll();
+        if (buffer == null || buffer.length < length) {
+            buffer = new double[Math.max(length, 256)];
+        }
+        return buffer;
+    }
+
+    private static void releaseScratch(double[] buffer) {
+        scratchBuffers.get().push(buffer);
+    }
 }
@@ -0,0 +1,144 @@
+package calculator;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+// Turns samples into as few shapes as possible: one path per connected piece of curve,
+// with points inside the same sub-pixel merged and near-collinear points removed
+public class PolylineRasterizer {
+    private static final float MERGE_DISTANCE = 0.25f; // Points closer than this to the previous one are dropped
+    private static final double TOLERANCE = 0.25;     // Pixels a removed point may deviate from the drawn line
+
+    private float[] xs = new float[256];
+    private float[] ys = new float[256];
+    private int size;
+
+    private final Path2D.Float path = new Path2D.Float();
+    private boolean[] keep = new boolean[256];
+    private int[] stack = new int[512];
+
+    private int pointsIn;
+    private int pointsOut;
+
+    // Uniform samples carry no discontinuity markers, so for them a segment jumping from one side of
+    // the viewport to the other is taken to be a pole and not drawn
+    public void draw(Graphics2D g2d, SampleBuffer samples, Viewport viewport, boolean uniform) {
+        double minX = viewport.minX();
+        double minY = viewport.minY();
+        double maxY = viewport.maxY();
+        int height = viewport.height();
+        double scalingFactorX = viewport.width() / (viewport.maxX() - minX);
+        double scalingFactorY = height / (maxY - minY);
+
+        size = 0;
+        pointsIn = 0;
+        pointsOut = 0;
+        double prevY = Double.NaN;
+        for (int i = 0; i < samples.size(); i++) {
+            double y = samples.getY(i);
+            if (Double.isNaN(y)) {
+                flush(g2d); // Discontinuity or undefined, break the curve
+                prevY = y;
+                continue;
+            }
+
+            if ((prevY > maxY && y > maxY) || (prevY < minY && y < minY)) {
+                flush(g2d); // The segment from the previous point is entirely off-screen
+            } else if (uniform && ((prevY > maxY && y < minY) || (prevY < minY && y > maxY))) {
+                flush(g2d);
+            }
+
+            // Off-screen ends are clamped and left to Java2D clipping
+            float pixelX = (float) ((samples.getX(i) - minX) * scalingFactorX);
+            float pixelY = (float) Math.max(-height, Math.min(2.0 * height, height - (y - minY) * scalingFactorY));
+            add(pixelX, pixelY);
+            prevY = y;
+        }
+        flush(g2d);
+    }
+
+    // Points handed to the rasterizer and points actually drawn by the last draw call
+    public int getPointsIn() { return pointsIn; }
+    public int getPointsOut() { return pointsOut; }
+
+    private void add(float pixelX, float pixelY) {
+        pointsIn++;
+        if (size > 0 && Math.abs(xs[size - 1] - pixelX) < MERGE_DISTANCE && Math.abs(ys[size - 1] - pixelY) < MERGE_DISTANCE) {
+            return; // Same sub-pixel as the previous sample
+        }
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = pixelX;
+        ys[size] = pixelY;
+        size++;
+    }
+
+    private void flush(Graphics2D g2d) {
+        if (size >= 2) {
+            pointsOut += simplify();
+            g2d.draw(path);
+        }
+        size = 0;
+    }
+
+    // Douglas-Peucker over the buffered points into path, iterative so long runs can't overflow the call stack
+    private int simplify() {
+        if (keep.length < size) {
+            keep = new boolean[xs.length];
+        }
+        Arrays.fill(keep, 0, size, false);
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        int top = 0;
+        top = push(top, 0, size - 1);
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double dx = xs[last] - xs[first];
+            double dy = ys[last] - ys[first];
+            double length = Math.hypot(dx, dy);
+            int farthest = -1;
+            double farthestDistance = TOLERANCE;
+            for (int i = first + 1; i < last; i++) {
+                double distance = length == 0
+                    ? Math.hypot(xs[i] - xs[first], ys[i] - ys[first])
+                    : Math.abs(dy * (xs[i] - xs[first]) - dx * (ys[i] - ys[first])) / length;
+                if (distance > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = distance;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                top = push(top, first, farthest);
+                top = push(top, farthest, last);
+            }
+        }
+
+        path.reset();
+        path.moveTo(xs[0], ys[0]);
+        int count = 1;
+        for (int i = 1; i < size; i++) {
+            if (keep[i]) {
+                path.lineTo(xs[i], ys[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int push(int top, int first, int last) {
+        if (top + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = first;
+        stack[top + 1] = last;
+        return top + 2;
+    }
+}
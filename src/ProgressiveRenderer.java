@@ -0,0 +1,105 @@
+package calculator;
+
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.SwingWorker;
+
+// Samples a family of functions in passes of increasing resolution: one sample per 8 pixels and one per pixel from
+// the tile cache, then the adaptive sub-pixel pass. Every pass is handed to onFrame on the EDT as soon as
+// it is done, so a coarse curve shows up within milliseconds however expensive the expression is.
+public class ProgressiveRenderer {
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 12_000_000L; // Leaves room for painting in a 60fps frame
+
+    private static final int[] PIXELS_PER_SAMPLE = {8, 1};
+
+    // Samples of each function of the family for viewport, in family order; uniform frames come from the tile
+    // cache and carry no discontinuity markers
+    public record Frame(FunctionFamily family, Viewport viewport, SampleBuffer[] samples, boolean uniform) {}
+
+    private record Request(FunctionFamily family, Viewport viewport, long budgetNanos) {}
+
+    private final SamplingEngine samplingEngine;
+    private final SampleTileCache tileCache;
+    private final Consumer<Frame> onFrame;
+    private Request currentRequest;
+    private Worker currentWorker;
+
+    public ProgressiveRenderer(SamplingEngine samplingEngine, SampleTileCache tileCache, Consumer<Frame> onFrame) {
+        this.samplingEngine = samplingEngine;
+        this.tileCache = tileCache;
+        this.onFrame = onFrame;
+    }
+
+    // Starts rendering the family of (already optimized, radian-mode) functions unless the same request is already
+    // running or done, cancelling the stale one. With a positive budget no further pass is started, and
+    // the adaptive pass is abandoned, once budgetNanos have passed. Call on the EDT.
+    public synchronized void request(FunctionFamily family, Viewport viewport, long budgetNanos) {
+        Request request = new Request(family, viewport, budgetNanos);
+        if (request.equals(currentRequest)) {
+            return;
+        }
+
+        cancel();
+        currentRequest = request;
+        currentWorker = new Worker(request);
+        currentWorker.execute();
+    }
+
+    public synchronized void cancel() {
+        if (currentWorker != null) {
+            currentWorker.cancel(true);
+            samplingEngine.cancel();
+            currentWorker = null;
+            currentRequest = null;
+        }
+    }
+
+    private class Worker extends SwingWorker<Void, Frame> {
+        private final Request request;
+
+        Worker(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            long deadline = System.nanoTime() + request.budgetNanos();
+
+            for (int pixelsPerSample : PIXELS_PER_SAMPLE) {
+                if (isCancelled()) {
+                    return null;
+                }
+                publish(new Frame(request.family(), request.viewport(), tileCache.samples(request.family(), request.viewport(), pixelsPerSample), true));
+                if (request.budgetNanos() > 0 && System.nanoTime() >= deadline) {
+                    return null; // Out of time for this frame
+                }
+            }
+
+            SamplingEngine.Job job;
+            synchronized (ProgressiveRenderer.this) {
+                if (isCancelled()) {
+                    return null; // Checked under the lock so a stale worker can't cancel a newer job
+                }
+                job = samplingEngine.submit(request.family(), request.viewport(), finished -> { });
+            }
+            long remaining = request.budgetNanos() > 0 ? Math.max(1, deadline - System.nanoTime()) : 0;
+            try {
+                if (job.await(remaining)) {
+                    publish(new Frame(request.family(), request.viewport(), job.getSamples(), false));
+                } else {
+                    job.cancel(); // Out of time, keep the per-pixel pass
+                }
+            } catch (InterruptedException e) {
+                job.cancel(); // Superseded by a newer request
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<Frame> frames) {
+            if (!isCancelled()) {
+                onFrame.accept(frames.get(frames.size() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package calculator;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Offscreen image that is only redrawn when its key changes
+public class RasterLayer {
+    private BufferedImage image;
+    private Object key;
+
+    // Returns the cached image for key, rendering it first if the key or size changed
+    public BufferedImage get(Object key, int width, int height, Consumer<Graphics2D> renderer) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            this.key = null;
+        }
+
+        if (!Objects.equals(this.key, key)) {
+            Graphics2D g2d = image.createGraphics();
+            try {
+                // Clear to transparent so layers can be stacked
+                g2d.setComposite(AlphaComposite.Clear);
+                g2d.fillRect(0, 0, width, height);
+                g2d.setComposite(AlphaComposite.SrcOver);
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                renderer.accept(g2d);
+            } finally {
+                g2d.dispose();
+            }
+            this.key = key;
+        }
+
+        return image;
+    }
+
+    public void invalidate() {
+        key = null;
+    }
+}
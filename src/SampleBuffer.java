@@ -0,0 +1,49 @@
+package calculator;
+
+import java.util.Arrays;
+
+// Growable (x, y) sample list backed by primitive arrays
+public class SampleBuffer {
+    private double[] xs;
+    private double[] ys;
+    private int size;
+
+    public SampleBuffer() {
+        this(64);
+    }
+
+    public SampleBuffer(int capacity) {
+        xs = new double[Math.max(capacity, 1)];
+        ys = new double[Math.max(capacity, 1)];
+    }
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public void addAll(SampleBuffer other) {
+        if (size + other.size > xs.length) {
+            xs = Arrays.copyOf(xs, Math.max(size + other.size, size * 2));
+            ys = Arrays.copyOf(ys, xs.length);
+        }
+        System.arraycopy(other.xs, 0, xs, size, other.size);
+        System.arraycopy(other.ys, 0, ys, size, other.size);
+        size += other.size;
+    }
+
+    public void clear() { size = 0; }
+
+    public int size() { return size; }
+    public double getX(int index) { return xs[index]; }
+    public double getY(int index) { return ys[index]; }
+
+    // Backing arrays, valid up to size()
+    public double[] getXs() { return xs; }
+    public double[] getYs() { return ys; }
+}
@@ -0,0 +1,292 @@
+package calculator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// A file of evenly spaced (x, f(x)) samples, written and read through memory-mapped regions so tables far larger
+// than the heap never pass through it. All numbers are little-endian. Layout:
+//
+//   0   8 bytes  magic "GCSAMPLE"
+//   8   int      format version
+//   12  int      data offset, a multiple of 8
+//   16  long     sample count
+//   24  double   first x
+//   32  double   last x
+//   40  int      1 if the expression was evaluated in radians, 0 for degrees
+//   44  int      expression length in UTF-8 bytes
+//   48  bytes    expression, zero-padded up to the data offset
+//   then count × (double x, double y)
+public class SampleTable implements Closeable {
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = "GCSAMPLE".getBytes(StandardCharsets.US_ASCII);
+    private static final int FIXED_HEADER_BYTES = 48;
+    private static final int SAMPLE_BYTES = 16;
+    private static final int WRITE_CHUNK_SAMPLES = 1 << 20;  // 16 MB mapped and filled by one task
+    private static final int EVALUATE_BLOCK_SAMPLES = 4096;
+    private static final int SEGMENT_SAMPLES_LOG2 = 26;       // Read mappings of 1 GB, MappedByteBuffer stops at 2 GB
+    private static final int SAMPLES_PER_PIXEL = 4;           // Up to this many per pixel column are all drawn
+    private static final int MAX_SCANNED_PER_PIXEL = 1024;    // Beyond this the column envelope is from a subset
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final String expression;
+    private final boolean useRadians;
+    private final double from;
+    private final double to;
+    private final long count;
+
+    private SampleTable(FileChannel channel, MappedByteBuffer[] segments, String expression, boolean useRadians, double from, double to, long count) {
+        this.channel = channel;
+        this.segments = segments;
+        this.expression = expression;
+        this.useRadians = useRadians;
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+
+    // Writes count samples of the optimized, radian-mode function, evenly spaced from from to to inclusive.
+    // Chunks are evaluated and written in parallel on the pool, each into its own mapped region of the file.
+    public static void write(Path file, String expression, boolean useRadians, Token function, double from, double to, long count, ForkJoinPool pool) throws IOException {
+        if (count < 1 || !Double.isFinite(from) || !Double.isFinite(to) || (count > 1 && !(from < to))) {
+            throw new IllegalArgumentException("Invalid range " + from + " to " + to + " with " + count + " samples");
+        }
+
+        byte[] expressionBytes = expression.getBytes(StandardCharsets.UTF_8);
+        int dataOffset = (FIXED_HEADER_BYTES + expressionBytes.length + 7) & ~7;
+        ByteBuffer header = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(dataOffset);
+        header.putLong(count);
+        header.putDouble(from);
+        header.putDouble(to);
+        header.putInt(useRadians ? 1 : 0);
+        header.putInt(expressionBytes.length);
+        header.put(expressionBytes);
+        header.position(0);
+
+        long fileBytes = Math.addExact(dataOffset, Math.multiplyExact(count, SAMPLE_BYTES));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                 StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.write(ByteBuffer.allocate(1), fileBytes - 1); // Size the file up front so regions can be mapped concurrently
+
+            List<Callable<Void>> chunks = new ArrayList<>();
+            for (long start = 0; start < count; start += WRITE_CHUNK_SAMPLES) {
+                long chunkStart = start;
+                int length = (int) Math.min(WRITE_CHUNK_SAMPLES, count - start);
+                chunks.add(() -> {
+                    writeChunk(channel, dataOffset, function, from, to, count, chunkStart, length);
+                    return null;
+                });
+            }
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        }
+    }
+
+    private static void writeChunk(FileChannel channel, long dataOffset, Token function, double from, double to, long count, long start, int length) throws IOException {
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + start * SAMPLE_BYTES, (long) length * SAMPLE_BYTES);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+
+        double[] xs = new double[Math.min(length, EVALUATE_BLOCK_SAMPLES)];
+        double[] ys = new double[xs.length];
+        for (int block = 0; block < length; block += xs.length) {
+            int blockLength = Math.min(xs.length, length - block);
+            for (int i = 0; i < blockLength; i++) {
+                xs[i] = sampleX(from, to, count, start + block + i);
+            }
+            try {
+                Parser.evaluate(function, true, xs, ys, 0, blockLength);
+            } catch (RuntimeException e) {
+                Arrays.fill(ys, Double.NaN); // Malformed tree, nothing to export
+            }
+            for (int i = 0; i < blockLength; i++) {
+                region.putDouble(xs[i]);
+                region.putDouble(ys[i]);
+            }
+        }
+    }
+
+    // Maps an existing table for reading. Only the header is read now; samples are paged in as they are accessed.
+    public static SampleTable open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, header, 0) || !Arrays.equals(Arrays.copyOf(header.array(), MAGIC.length), MAGIC)) {
+                throw new IOException(file + " is not a sample table");
+            }
+            header.position(MAGIC.length);
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported sample table version " + version);
+            }
+            int dataOffset = header.getInt();
+            long count = header.getLong();
+            double from = header.getDouble();
+            double to = header.getDouble();
+            boolean useRadians = header.getInt() != 0;
+            int expressionLength = header.getInt();
+            if (count < 1 || count > Long.MAX_VALUE / (2 * SAMPLE_BYTES) || expressionLength < 0
+                    || dataOffset < FIXED_HEADER_BYTES + expressionLength || channel.size() < dataOffset + count * SAMPLE_BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+
+            ByteBuffer expressionBytes = ByteBuffer.allocate(expressionLength);
+            readFully(channel, expressionBytes, FIXED_HEADER_BYTES);
+            String expression = new String(expressionBytes.array(), StandardCharsets.UTF_8);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((count - 1) >> SEGMENT_SAMPLES_LOG2) + 1];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SAMPLES_LOG2;
+                long samples = Math.min(1L << SEGMENT_SAMPLES_LOG2, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + first * SAMPLE_BYTES, samples * SAMPLE_BYTES);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new SampleTable(channel, segments, expression, useRadians, from, to, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getExpression() { return expression; }
+    public boolean isRadians() { return useRadians; }
+    public double getFrom() { return from; }
+    public double getTo() { return to; }
+    public long getCount() { return count; }
+
+    public double getX(long index) {
+        return segment(index).getDouble(offset(index));
+    }
+
+    public double getY(long index) {
+        return segment(index).getDouble(offset(index) + 8);
+    }
+
+    // The samples over the viewport plus one either side. Where a pixel column holds more than a few, only its
+    // first and last, those with the lowest and highest y and its first NaN are kept, in order: drawn, they
+    // cover the same pixels of the column as all of them, where every n-th sample would alias spikes and
+    // oscillations away. Columns of more than MAX_SCANNED_PER_PIXEL samples are scanned at evenly spaced ones,
+    // so drawing costs a bounded amount however many samples the table holds.
+    public SampleBuffer samples(Viewport viewport) {
+        SampleBuffer samples = new SampleBuffer();
+        if (count == 1) {
+            samples.add(getX(0), getY(0));
+            return samples;
+        }
+
+        double spacing = (to - from) / (count - 1);
+        long first = (long) Math.max(0, Math.min(count - 1, Math.floor((viewport.minX() - from) / spacing)));
+        long last = (long) Math.max(0, Math.min(count - 1, Math.ceil((viewport.maxX() - from) / spacing)));
+        double perColumn = viewport.pixelWidth() / spacing;
+        if (perColumn <= SAMPLES_PER_PIXEL) {
+            for (long index = first; index <= last; index++) {
+                samples.add(getX(index), getY(index));
+            }
+            return samples;
+        }
+
+        long step = Math.max(1, (long) (perColumn / MAX_SCANNED_PER_PIXEL));
+        long[] kept = new long[5];
+        for (long start = first; start <= last; ) {
+            // The samples from start to the right edge of its pixel column
+            double column = Math.floor((getX(start) - viewport.minX()) / viewport.pixelWidth());
+            double edge = viewport.minX() + (column + 1) * viewport.pixelWidth();
+            long end = Math.max(start, Math.min(last, (long) Math.ceil((edge - from) / spacing) - 1));
+
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            kept[0] = start;
+            kept[1] = -1;
+            kept[2] = -1;
+            kept[3] = -1;
+            kept[4] = end;
+            for (long index = start; index <= end; index += step) {
+                double y = getY(index);
+                if (Double.isNaN(y)) {
+                    if (kept[3] < 0) {
+                        kept[3] = index; // Keeps the gap
+                    }
+                } else {
+                    if (y < min) {
+                        min = y;
+                        kept[1] = index;
+                    }
+                    if (y > max) {
+                        max = y;
+                        kept[2] = index;
+                    }
+                }
+            }
+
+            Arrays.sort(kept);
+            long previous = -1;
+            for (long index : kept) {
+                if (index > previous) { // Skips the unset and the repeated
+                    samples.add(getX(index), getY(index));
+                    previous = index;
+                }
+            }
+            start = end + 1;
+        }
+        return samples;
+    }
+
+    // The mapped segments stay valid until they are garbage collected, Java has no explicit unmap
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // False if the file ends first
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedByteBuffer segment(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Sample " + index + " of " + count);
+        }
+        return segments[(int) (index >> SEGMENT_SAMPLES_LOG2)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index & ((1L << SEGMENT_SAMPLES_LOG2) - 1)) * SAMPLE_BYTES;
+    }
+
+    static double sampleX(double from, double to, long count, long index) {
+        return count == 1 ? from : from + (to - from) * index / (count - 1);
+    }
+}
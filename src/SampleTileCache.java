@@ -0,0 +1,205 @@
+package calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+// Uniform samples of a function cut into tiles of TILE_SAMPLES samples. A tile at level L spans 2^L
+// units of x, so sample positions are exact binary fractions shared by every level and every pan offset.
+public class SampleTileCache {
+    public static final int TILE_SAMPLES = 256;
+    public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+    private static final int TILE_SAMPLES_LOG2 = 8;
+    private static final long TILE_BYTES = TILE_SAMPLES * 8L + 96; // Samples plus key and map entry overhead
+    private static final int MIN_LEVEL = -900;
+    private static final int MAX_LEVEL = 900;
+
+    private record TileKey(Token function, boolean fastMath, int level, long index) {} // Modes share trees, not samples
+
+    private final ForkJoinPool pool;
+    private final long maxBytes;
+    private final LinkedHashMap<TileKey, double[]> tiles = new LinkedHashMap<>(64, 0.75f, true); // Access order, eldest is LRU
+    private long hits;
+    private long misses;
+
+    public SampleTileCache(ForkJoinPool pool) {
+        this(pool, DEFAULT_MAX_BYTES);
+    }
+
+    public SampleTileCache(ForkJoinPool pool, long maxBytes) {
+        this.pool = pool;
+        this.maxBytes = maxBytes;
+    }
+
+    // Assembles one sample per pixelsPerSample pixels (rounded down to a power of two) of every function in the
+    // family, which must be optimized and in radian mode. Missing tiles are computed in parallel on the pool
+    // before returning, one task per tile position evaluating all functions missing there in a single pass.
+    public SampleBuffer[] samples(FunctionFamily family, Viewport viewport, int pixelsPerSample) {
+        int level = levelFor(viewport.pixelWidth() * pixelsPerSample);
+        double tileWidth = Math.scalb(1.0, level);
+        long first = (long) Math.floor(viewport.minX() / tileWidth);
+        long last = (long) Math.floor(viewport.maxX() / tileWidth);
+
+        double[][][] tileSamples = new double[family.size()][(int) (last - first + 1)][];
+        List<Callable<Void>> missing = new ArrayList<>();
+        for (long index = first; index <= last; index++) {
+            int slot = (int) (index - first);
+            List<TileKey> missingKeys = new ArrayList<>();
+            List<Integer> missingFunctions = new ArrayList<>();
+            for (int f = 0; f < family.size(); f++) {
+                TileKey key = new TileKey(family.get(f), family.isFastMath(), level, index);
+                tileSamples[f][slot] = get(key);
+                if (tileSamples[f][slot] == null) {
+                    missingKeys.add(key);
+                    missingFunctions.add(f);
+                }
+            }
+            if (!missingKeys.isEmpty()) {
+                missing.add(() -> {
+                    double[][] computed = computeTiles(family, missingFunctions, missingKeys);
+                    for (int i = 0; i < computed.length; i++) {
+                        tileSamples[missingFunctions.get(i)][slot] = computed[i];
+                        put(missingKeys.get(i), computed[i]);
+                    }
+                    return null;
+                });
+            }
+        }
+        if (!missing.isEmpty()) {
+            pool.invokeAll(missing); // Completion of invokeAll makes the tiles visible to this thread
+        }
+
+        SampleBuffer[] samples = new SampleBuffer[family.size()];
+        for (int f = 0; f < family.size(); f++) {
+            samples[f] = new SampleBuffer(tileSamples[f].length * TILE_SAMPLES);
+            for (int slot = 0; slot < tileSamples[f].length; slot++) {
+                for (int k = 0; k < TILE_SAMPLES; k++) {
+                    samples[f].add(sampleX(level, first + slot, k), tileSamples[f][slot][k]);
+                }
+            }
+        }
+        return samples;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized long getUsedBytes() {
+        return tiles.size() * TILE_BYTES;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+    // Coarsest level whose sample spacing is no wider than sampleSpacing
+    static int levelFor(double sampleSpacing) {
+        int level = Math.getExponent(sampleSpacing) + TILE_SAMPLES_LOG2;
+        return Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level));
+    }
+
+    static double sampleX(int level, long index, int sample) {
+        return Math.scalb((double) (index * TILE_SAMPLES + sample), level - TILE_SAMPLES_LOG2);
+    }
+
+    private synchronized double[] get(TileKey key) {
+        double[] ys = tiles.get(key);
+        if (ys != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return ys;
+    }
+
+    // Lookup that doesn't count towards the hit rate
+    private synchronized double[] peek(TileKey key) {
+        return tiles.get(key);
+    }
+
+    private synchronized void put(TileKey key, double[] ys) {
+        tiles.put(key, ys);
+
+        Iterator<Map.Entry<TileKey, double[]>> eldest = tiles.entrySet().iterator();
+        while (tiles.size() * TILE_BYTES > maxBytes && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    // Tiles of the given functions at one position, all keys sharing level and index
+    private double[][] computeTiles(FunctionFamily family, List<Integer> functions, List<TileKey> keys) {
+        double[][] tiles = new double[keys.size()][];
+        List<Integer> fromParent = new ArrayList<>();
+        List<Integer> fromScratch = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            TileKey key = keys.get(i);
+            tiles[i] = new double[TILE_SAMPLES];
+
+            // Zooming out: the two children hold every sample of this tile
+            double[] leftChild = peek(new TileKey(key.function(), key.fastMath(), key.level() - 1, key.index() * 2));
+            double[] rightChild = peek(new TileKey(key.function(), key.fastMath(), key.level() - 1, key.index() * 2 + 1));
+            if (leftChild != null && rightChild != null) {
+                for (int k = 0; k < TILE_SAMPLES / 2; k++) {
+                    tiles[i][k] = leftChild[2 * k];
+                    tiles[i][k + TILE_SAMPLES / 2] = rightChild[2 * k];
+                }
+                continue;
+            }
+
+            // Zooming in: the parent holds the even samples, only the odd ones need evaluating
+            double[] parent = peek(new TileKey(key.function(), key.fastMath(), key.level() + 1, Math.floorDiv(key.index(), 2)));
+            if (parent != null) {
+                int offset = Math.floorMod(key.index(), 2) * TILE_SAMPLES / 2;
+                for (int k = 0; k < TILE_SAMPLES; k += 2) {
+                    tiles[i][k] = parent[offset + k / 2];
+                }
+                fromParent.add(i);
+            } else {
+                fromScratch.add(i);
+            }
+        }
+
+        TileKey key = keys.get(0);
+        evaluate(family, functions, tiles, fromParent, key, 2);
+        evaluate(family, functions, tiles, fromScratch, key, 1);
+        return tiles;
+    }
+
+    // Fills every step-th sample (ending at the tile's last sample) of the listed tiles in one fused pass
+    private static void evaluate(FunctionFamily family, List<Integer> functions, double[][] tiles, List<Integer> which, TileKey key, int step) {
+        if (which.isEmpty()) {
+            return;
+        }
+
+        int count = TILE_SAMPLES / step;
+        double[] xs = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = sampleX(key.level(), key.index(), i * step + step - 1);
+        }
+        int[] selected = new int[which.size()];
+        for (int j = 0; j < selected.length; j++) {
+            selected[j] = functions.get(which.get(j));
+        }
+        double[][] values = new double[selected.length][count];
+        try {
+            family.evaluate(selected, xs, values, 0, count);
+        } catch (RuntimeException e) {
+            for (double[] row : values) {
+                Arrays.fill(row, Double.NaN); // Malformed tree, nothing to plot
+            }
+        }
+        for (int j = 0; j < selected.length; j++) {
+            double[] tile = tiles[which.get(j)];
+            for (int i = 0; i < count; i++) {
+                tile[i * step + step - 1] = values[j][i];
+            }
+        }
+    }
+}
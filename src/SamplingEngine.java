@@ -0,0 +1,238 @@
+package calculator;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class SamplingEngine {
+    private static final int COARSE_PIXELS = 4;      // Pixels per coarse interval before adaptive refinement
+    private static final int CHUNK_INTERVALS = 16;   // Coarse intervals refined by one task
+    private static final int BUDGET_PER_PIXEL = 8;   // Refinement evaluations allowed per pixel column
+
+    private final ForkJoinPool pool;
+    private Job currentJob;
+
+    public SamplingEngine() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    public SamplingEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Cancels the running job and samples every (already optimized, radian-mode) function of the family across
+    // the viewport. onDone runs on a pool thread once every sample has been written, and never for a cancelled job.
+    public synchronized Job submit(FunctionFamily family, Viewport viewport, Consumer<Job> onDone) {
+        cancel();
+
+        Job job = new Job(family, viewport);
+        currentJob = job;
+        pool.execute(() -> {
+            try {
+                new SampleTask(job, 0, job.coarseIntervals).invoke();
+                if (!job.cancelled) {
+                    job.collectSamples();
+                    job.done = true;
+                    onDone.accept(job);
+                }
+            } finally {
+                job.finished.countDown();
+            }
+        });
+        return job;
+    }
+
+    public synchronized Job currentJob() {
+        return currentJob;
+    }
+
+    public synchronized void cancel() {
+        if (currentJob != null) {
+            currentJob.cancel();
+            currentJob = null;
+        }
+    }
+
+    public static class Job {
+        private final FunctionFamily family;
+        private final Viewport viewport;
+        private final TieredFunction[] refinementFunctions;
+        private final int coarseIntervals;
+        private final SampleBuffer[][] chunkSamples; // Per function, per chunk
+        private final SampleBuffer[] samples;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean cancelled;
+        private volatile boolean done;
+
+        Job(FunctionFamily family, Viewport viewport) {
+            this.family = family;
+            this.viewport = viewport;
+            this.coarseIntervals = Math.max(1, viewport.width() / COARSE_PIXELS);
+            this.chunkSamples = new SampleBuffer[family.size()][(coarseIntervals + CHUNK_INTERVALS - 1) / CHUNK_INTERVALS];
+            this.samples = new SampleBuffer[family.size()];
+            this.refinementFunctions = new TieredFunction[family.size()];
+            for (int f = 0; f < family.size(); f++) {
+                samples[f] = new SampleBuffer();
+                refinementFunctions[f] = family.getFunction(f); // Shared by every job for the family
+                refinementFunctions[f].expectInvocations((long) viewport.width() * BUDGET_PER_PIXEL);
+            }
+        }
+
+        public boolean matches(FunctionFamily family, Viewport viewport) {
+            return this.family == family && this.viewport.equals(viewport);
+        }
+
+        public boolean isDone() { return done; }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        // Waits up to timeoutNanos (forever if not positive) for the samples; false if cancelled or timed out
+        public boolean await(long timeoutNanos) throws InterruptedException {
+            if (timeoutNanos > 0) {
+                finished.await(timeoutNanos, TimeUnit.NANOSECONDS);
+            } else {
+                finished.await();
+            }
+            return done;
+        }
+        public Viewport getViewport() { return viewport; }
+
+        // One buffer per function of the family, only meaningful once isDone() returns true
+        public SampleBuffer[] getSamples() { return samples; }
+
+        double coarseX(int index) {
+            return viewport.minX() + (viewport.maxX() - viewport.minX()) * index / coarseIntervals;
+        }
+
+        private void collectSamples() {
+            for (int f = 0; f < samples.length; f++) {
+                for (SampleBuffer chunk : chunkSamples[f]) {
+                    samples[f].addAll(chunk);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial") // Forked, never serialized
+    private static class SampleTask extends RecursiveAction {
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        SampleTask(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.cancelled) {
+                return;
+            }
+
+            if (to - from > CHUNK_INTERVALS) {
+                // Split on chunk boundaries so every leaf owns exactly one chunk buffer
+                int chunks = (to - from + CHUNK_INTERVALS - 1) / CHUNK_INTERVALS;
+                int middle = from + (chunks / 2) * CHUNK_INTERVALS;
+                invokeAll(new SampleTask(job, from, middle), new SampleTask(job, middle, to));
+                return;
+            }
+
+            Viewport viewport = job.viewport;
+            int chunk = from / CHUNK_INTERVALS;
+            int pointCount = to - from + 1;
+            double[] coarseXs = new double[pointCount];
+            for (int i = 0; i < pointCount; i++) {
+                coarseXs[i] = job.coarseX(from + i);
+            }
+
+            // Functions provably off-screen over the whole chunk only need their end points to join the neighbours
+            int[] visible = new int[job.family.size()];
+            int visibleCount = 0;
+            for (int f = 0; f < job.family.size(); f++) {
+                if (isCulled(f, coarseXs[0], coarseXs[pointCount - 1])) {
+                    TieredFunction function = job.refinementFunctions[f];
+                    SampleBuffer samples = new SampleBuffer(2);
+                    if (from == 0) {
+                        samples.add(coarseXs[0], function.applyAsDouble(coarseXs[0]));
+                    }
+                    samples.add(coarseXs[pointCount - 1], function.applyAsDouble(coarseXs[pointCount - 1]));
+                    job.chunkSamples[f][chunk] = samples;
+                } else {
+                    visible[visibleCount++] = f;
+                }
+            }
+            if (visibleCount == 0) {
+                return;
+            }
+            visible = Arrays.copyOf(visible, visibleCount);
+
+            // Evaluate the coarse grid of every visible function in one fused batch, then refine each adaptively
+            double[][] coarseYs = new double[visibleCount][pointCount];
+            try {
+                job.family.evaluate(visible, coarseXs, coarseYs, 0, pointCount);
+            } catch (RuntimeException e) {
+                for (int f : visible) {
+                    job.chunkSamples[f][chunk] = new SampleBuffer(); // Malformed tree, nothing to plot
+                }
+                return;
+            }
+
+            int budget = (int) ((long) viewport.width() * BUDGET_PER_PIXEL * (to - from) / job.coarseIntervals);
+            for (int j = 0; j < visibleCount && !job.cancelled; j++) {
+                job.chunkSamples[visible[j]][chunk] = refine(visible[j], coarseXs, coarseYs[j], budget);
+            }
+        }
+
+        private SampleBuffer refine(int f, double[] coarseXs, double[] coarseYs, int budget) {
+            Instrumentation.EvaluateEvent event = new Instrumentation.EvaluateEvent();
+            long counterStart = Instrumentation.counterStart();
+            event.begin();
+            Viewport viewport = job.viewport;
+            Token function = job.family.get(f);
+            TieredFunction refinementFunction = job.refinementFunctions[f];
+            AdaptiveSampler sampler = new AdaptiveSampler(AdaptiveSampler.DEFAULT_MAX_DEPTH, budget, viewport.pixelWidth(), viewport.pixelHeight());
+            SampleBuffer samples = new SampleBuffer(coarseXs.length * 2);
+            if (from == 0) {
+                samples.add(coarseXs[0], coarseYs[0]);
+            }
+            for (int i = 1; i < coarseXs.length && !job.cancelled; i++) {
+                double x0 = coarseXs[i - 1];
+                double y0 = coarseYs[i - 1];
+                double x1 = coarseXs[i];
+                double y1 = coarseYs[i];
+                if (Double.isNaN(y0) || Double.isNaN(y1)) {
+                    sampler.refine(refinementFunction, x0, y0, x1, y1, samples); // Domain edges always need refining
+                    continue;
+                }
+
+                // Only refine intervals whose enclosure is visible and taller than a pixel
+                Interval enclosure = IntervalEvaluator.evaluate(function, true, x0, x1);
+                if (enclosure.isOutside(viewport.minY(), viewport.maxY()) || enclosure.width() <= viewport.pixelHeight()) {
+                    samples.add(x1, y1);
+                } else {
+                    sampler.refine(refinementFunction, x0, y0, x1, y1, samples);
+                }
+            }
+            int evaluated = budget - sampler.getRemainingBudget();
+            Instrumentation.countEvaluation(evaluated, counterStart);
+            event.finish("AdaptiveSampler", evaluated);
+            return samples;
+        }
+
+        // True when the interval enclosure proves function f stays off-screen over [x0, x1]
+        private boolean isCulled(int f, double x0, double x1) {
+            try {
+                return IntervalEvaluator.evaluate(job.family.get(f), true, x0, x1).isOutside(job.viewport.minY(), job.viewport.maxY());
+            } catch (RuntimeException e) {
+                return false; // Malformed tree, let the sampling path report it
+            }
+        }
+    }
+}
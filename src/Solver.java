@@ -0,0 +1,267 @@
+package calculator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Finds the roots, intersections and local extrema of functions of X over a range. The range is split into
+// brackets that are searched in parallel: brackets where interval arithmetic proves there is no root are
+// dropped, the rest are sampled, and every sign change is refined by Newton's method on the dual-number
+// derivative, falling back to bisection whenever a step would leave the bracket.
+public class Solver {
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+
+    private static final int INITIAL_BRACKETS = 256;  // Brackets the range is split into before sampling
+    private static final int SAMPLES_PER_BRACKET = 64;
+    private static final int DENSE_SIGN_CHANGES = 8;  // More than this in one bracket and it is split again
+    private static final int MAX_DEPTH = 48;          // Halvings of the range, below this a bracket is not split
+    private static final int MAX_ITERATIONS = 100;
+
+    public enum Kind { ROOT, INTERSECTION, MINIMUM, MAXIMUM }
+
+    public record Feature(Kind kind, double x, double y) {}
+
+    private final ForkJoinPool pool;
+
+    public Solver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Every x in [from, to] where function is zero, to within tolerance in x. Sign changes across a pole,
+    // like those of tan, are not roots and are left out.
+    public List<Feature> roots(Token function, boolean useRadians, double from, double to, double tolerance) {
+        return solve(new Search(Kind.ROOT, function, null, useRadians, tolerance), from, to);
+    }
+
+    // Every x in [from, to] where f and g are equal, with y the common value
+    public List<Feature> intersections(Token f, Token g, boolean useRadians, double from, double to, double tolerance) {
+        Token difference = new Token(Token.TokenType.OPERATOR, "-", f, g);
+        return solve(new Search(Kind.INTERSECTION, difference, f, useRadians, tolerance), from, to);
+    }
+
+    // Every local minimum and maximum in (from, to), found as the sign changes of the derivative
+    public List<Feature> extrema(Token function, boolean useRadians, double from, double to, double tolerance) {
+        return solve(new Search(Kind.MINIMUM, function, function, useRadians, tolerance), from, to); // MINIMUM stands for both
+    }
+
+    private List<Feature> solve(Search search, double from, double to) {
+        if (!(from < to) || !Double.isFinite(to - from) || !(search.tolerance > 0)) {
+            throw new IllegalArgumentException("Invalid range " + from + " to " + to + " with tolerance " + search.tolerance);
+        }
+
+        List<Feature> found = pool.invoke(new BracketTask(search, from, to, 0, (to - from) / INITIAL_BRACKETS));
+        found.sort(Comparator.comparingDouble(Feature::x));
+
+        // A root exactly on a bracket boundary is found from both sides, a double root both as a zero and as an extremum
+        List<Feature> features = new ArrayList<>(found.size());
+        for (Feature feature : found) {
+            Feature last = features.isEmpty() ? null : features.get(features.size() - 1);
+            if (last == null || last.kind() != feature.kind() || feature.x() - last.x() > search.tolerance) {
+                features.add(feature);
+            }
+        }
+        return features;
+    }
+
+    // What is being looked for; immutable, so shared by all tasks of a search
+    private static final class Search {
+        final Kind kind;
+        final Token tree;        // Function whose zeros are wanted, or whose derivative's zeros for extrema
+        final Token reported;    // Function whose value is reported as y, null if y is always 0
+        final boolean useRadians;
+        final double tolerance;
+        final DualEvaluator evaluator;
+        final boolean extrema;
+
+        Search(Kind kind, Token tree, Token reported, boolean useRadians, double tolerance) {
+            this.kind = kind;
+            this.tree = tree;
+            this.reported = reported;
+            this.useRadians = useRadians;
+            this.tolerance = tolerance;
+            this.evaluator = new DualEvaluator(tree, useRadians);
+            this.extrema = kind == Kind.MINIMUM || kind == Kind.MAXIMUM;
+        }
+
+        // Interval arithmetic has no derivative trees, so extremum searches can't rule a bracket out
+        boolean excludesZero(double lo, double hi) {
+            if (extrema) {
+                return false;
+            }
+            try {
+                return IntervalEvaluator.evaluate(tree, useRadians, lo, hi).isOutside(0, 0);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        double reportedValue(double x) {
+            return reported == null ? 0 : Parser.evaluate(reported, useRadians, x);
+        }
+    }
+
+    @SuppressWarnings("serial") // Forked, never serialized
+    private static class BracketTask extends RecursiveTask<List<Feature>> {
+        private final Search search;
+        private final double lo;
+        private final double hi;
+        private final int depth;
+        private final double initialWidth;
+
+        BracketTask(Search search, double lo, double hi, int depth, double initialWidth) {
+            this.search = search;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.initialWidth = initialWidth;
+        }
+
+        @Override
+        protected List<Feature> compute() {
+            if (search.excludesZero(lo, hi)) {
+                return new ArrayList<>();
+            }
+            if (hi - lo > initialWidth) {
+                return split();
+            }
+
+            // Sample the bracket with f and f' (f' and f'' for extrema) from one dual-number pass
+            double[] xs = new double[SAMPLES_PER_BRACKET + 1];
+            for (int i = 0; i <= SAMPLES_PER_BRACKET; i++) {
+                xs[i] = i == SAMPLES_PER_BRACKET ? hi : lo + (hi - lo) * i / SAMPLES_PER_BRACKET;
+            }
+            double[] values = new double[xs.length];
+            double[] slopes = new double[xs.length];
+            double[] curvatures = search.extrema ? new double[xs.length] : null;
+            search.evaluator.evaluate(xs, values, slopes, curvatures, 0, xs.length);
+            double[] g = search.extrema ? slopes : values;
+
+            int signChanges = 0;
+            for (int i = 0; i < SAMPLES_PER_BRACKET; i++) {
+                if (changesSign(g[i], g[i + 1])) {
+                    signChanges++;
+                }
+            }
+            // Oscillating faster than the samples can follow, e.g. sin(1÷X) near 0: look closer, down to the tolerance
+            if (signChanges > DENSE_SIGN_CHANGES && depth < MAX_DEPTH && (hi - lo) / SAMPLES_PER_BRACKET > search.tolerance) {
+                return split();
+            }
+
+            List<Feature> features = new ArrayList<>();
+            double spacing = (hi - lo) / SAMPLES_PER_BRACKET;
+            for (int i = 0; i < SAMPLES_PER_BRACKET; i++) {
+                if (g[i] == 0) {
+                    addZero(features, xs[i], i > 0 ? g[i - 1] : slope(xs[i] - spacing), g[i + 1]);
+                } else if (changesSign(g[i], g[i + 1])) {
+                    addZero(features, refine(xs[i], xs[i + 1], g[i], g[i + 1]), g[i], g[i + 1]);
+                } else if (!search.extrema && changesSign(slopes[i], slopes[i + 1])) {
+                    // f touches zero without crossing it, like X^2, only if its extremum here is a zero
+                    double x = refine(xs[i], xs[i + 1], slopes[i], slopes[i + 1], true);
+                    if (!Double.isNaN(x) && Math.abs(search.evaluator.evaluate(x).value()) <= search.tolerance) {
+                        addZero(features, x, Double.NaN, Double.NaN);
+                    }
+                }
+            }
+            if (g[SAMPLES_PER_BRACKET] == 0) {
+                addZero(features, hi, g[SAMPLES_PER_BRACKET - 1], slope(hi + spacing));
+            }
+            return features;
+        }
+
+        private List<Feature> split() {
+            double middle = lo + (hi - lo) / 2;
+            BracketTask left = new BracketTask(search, lo, middle, depth + 1, initialWidth);
+            BracketTask right = new BracketTask(search, middle, hi, depth + 1, initialWidth);
+            left.fork();
+            List<Feature> features = right.compute();
+            features.addAll(left.join());
+            return features;
+        }
+
+        // For extrema, before and after are f' either side of x: a minimum where it goes from negative to
+        // positive, a maximum the other way, so flat ones like that of X^4 count too. The sign of f'' only decides
+        // where a side is undefined.
+        private void addZero(List<Feature> features, double x, double before, double after) {
+            if (Double.isNaN(x)) {
+                return; // A pole, not a zero
+            }
+            if (!search.extrema) {
+                features.add(new Feature(search.kind, x, search.reportedValue(x)));
+                return;
+            }
+            Kind kind;
+            if (before < 0 && after > 0) {
+                kind = Kind.MINIMUM;
+            } else if (before > 0 && after < 0) {
+                kind = Kind.MAXIMUM;
+            } else if (Double.isNaN(before) || Double.isNaN(after)) {
+                double curvature = search.evaluator.evaluate(x).curvature();
+                kind = curvature > 0 ? Kind.MINIMUM : curvature < 0 ? Kind.MAXIMUM : null;
+            } else {
+                kind = null; // f' doesn't change sign, e.g. at the inflection of X^3
+            }
+            if (kind != null) {
+                features.add(new Feature(kind, x, search.reportedValue(x)));
+            }
+        }
+
+        private double slope(double x) {
+            return search.evaluator.evaluate(x).slope();
+        }
+
+        private double refine(double a, double b, double ga, double gb) {
+            return refine(a, b, ga, gb, search.extrema);
+        }
+
+        // Zero of f (or of f' if onSlope) in [a, b], whose ends have opposite signs: Newton steps while they stay
+        // inside the shrinking bracket and at least halve the previous step, bisection otherwise. NaN if the
+        // bracket closes on a pole instead, where the magnitude grows rather than shrinking.
+        private double refine(double a, double b, double ga, double gb, boolean onSlope) {
+            double bound = Math.max(Math.abs(ga), Math.abs(gb));
+            double x = a + (b - a) / 2;
+            double previousStep = b - a;
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                Dual point = search.evaluator.evaluate(x);
+                double g = onSlope ? point.slope() : point.value();
+                if (g == 0) {
+                    return x;
+                }
+                if (Double.isNaN(g)) {
+                    return Double.NaN;
+                }
+                if (changesSign(ga, g)) {
+                    b = x;
+                } else {
+                    a = x;
+                    ga = g;
+                }
+                if (b - a <= search.tolerance) {
+                    break;
+                }
+
+                double step = g / (onSlope ? point.curvature() : point.slope());
+                double next = x - step;
+                if (next > a && next < b && Math.abs(step) < previousStep / 2) {
+                    x = next;
+                    previousStep = Math.abs(step);
+                    if (previousStep <= search.tolerance / 2) {
+                        break;
+                    }
+                } else {
+                    x = a + (b - a) / 2;
+                    previousStep = b - a;
+                }
+            }
+
+            Dual point = search.evaluator.evaluate(x);
+            double g = onSlope ? point.slope() : point.value();
+            return Math.abs(g) <= 2 * bound ? x : Double.NaN;
+        }
+
+        private static boolean changesSign(double a, double b) {
+            return (a < 0 && b > 0) || (a > 0 && b < 0);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package calculator;
+
+import java.util.function.DoubleUnaryOperator;
+
+public class TieredFunction implements DoubleUnaryOperator {
+    // Evaluations after which the formula is worth turning into bytecode
+    public static final int DEFAULT_COMPILE_THRESHOLD = 2_000;
+
+    private final Token node;
+    private final CompiledExpression program; // Null if the tree is malformed, Parser.evaluate then reports it
+    private final ThreadLocal<CompiledExpression> interpreters; // Per thread, as instances are shared by the sampling tasks
+    private final boolean useRadians;
+    private final boolean fastMath;
+    private final int compileThreshold;
+
+    private int invocations; // Racy on purpose, it only has to get past the threshold eventually
+    private volatile DoubleUnaryOperator compiled;
+    private volatile boolean compileFailed;
+
+    public TieredFunction(Token node, boolean useRadians) {
+        this(node, useRadians, false, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public TieredFunction(Token node, boolean useRadians, int compileThreshold) {
+        this(node, useRadians, false, compileThreshold);
+    }
+
+    // With fastMath, both tiers use the FastMath kernels
+    public TieredFunction(Token node, boolean useRadians, boolean fastMath) {
+        this(node, useRadians, fastMath, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public TieredFunction(Token node, boolean useRadians, boolean fastMath, int compileThreshold) {
+        this.node = node;
+        this.useRadians = useRadians;
+        this.fastMath = fastMath;
+        this.program = programOrNull(node, useRadians, fastMath);
+        this.interpreters = ThreadLocal.withInitial(() -> program.copy());
+        this.compileThreshold = compileThreshold;
+    }
+
+    // Lets callers that know they are about to evaluate many samples skip the interpreted warm-up
+    public void expectInvocations(long count) {
+        if (count >= compileThreshold) {
+            compile();
+        }
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        DoubleUnaryOperator function = compiled;
+        if (function != null) {
+            return function.applyAsDouble(x);
+        }
+        if (!compileFailed && ++invocations >= compileThreshold) {
+            compile();
+        }
+        if (program != null) {
+            return interpreters.get().evaluate(x); // Interpret, evaluating repeated subexpressions once
+        }
+        return Parser.evaluate(node, useRadians, x);
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    private static CompiledExpression programOrNull(Token node, boolean useRadians, boolean fastMath) {
+        try {
+            return CompiledExpression.compile(ExpressionDag.of(node), useRadians, fastMath);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private synchronized void compile() {
+        if (compiled != null || compileFailed) {
+            return;
+        }
+        try {
+            compiled = BytecodeCompiler.compile(node, useRadians, fastMath);
+        } catch (RuntimeException | LinkageError | StackOverflowError e) {
+            // Keep interpreting, e.g. for trees too large for one method, bytecode the verifier rejects, or trees
+            // too deep for the recursive code generator
+            compileFailed = true;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package calculator;
+
+// Visible part of the plane, mapped onto a panel of width × height pixels
+public record Viewport(double minX, double maxX, double minY, double maxY, int width, int height) {
+    public double pixelWidth() { return (maxX - minX) / width; }
+    public double pixelHeight() { return (maxY - minY) / height; }
+}